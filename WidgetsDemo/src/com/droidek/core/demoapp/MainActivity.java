@@ -34,6 +34,8 @@ public class MainActivity extends Activity {
         getWindowManager().getDefaultDisplay().getMetrics(metrics);
         ganttChartView.setMetrics(metrics);
         ganttChartView.setSelected(true);
+        // the tasks survive the rotation
+        ganttChartView.restoreModel((GanttChartView.RetainedModel) getLastNonConfigurationInstance());
         ganttChartView.setCallback(new ICallback() {
           
           @Override
@@ -89,6 +91,11 @@ public class MainActivity extends Activity {
         });
     }
 
+    @Override
+    public Object onRetainNonConfigurationInstance() {
+        return ganttChartView.retainModel();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.activity_main, menu);
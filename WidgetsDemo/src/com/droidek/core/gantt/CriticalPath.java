@@ -0,0 +1,453 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.BitSet;
+
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Critical path of the tasks linked by finish-to-start dependencies, kept up to date incrementally.
+ * <p>
+ * A task can't start before its own start or before its predecessors finish, so its early finish is
+ * <code>max(start, early finishes of the predecessors) + duration</code>. The tail of a task is the longest
+ * chain of durations after it, which depends on the durations only. The project ends at the latest early finish,
+ * the late finish of a task is the project end less its tail, and the slack is the difference of the finishes.
+ * <p>
+ * The changes only mark the tasks, {@link #update()} recalculates the early finishes of the marked tasks
+ * and their descendants and the tails of the marked tasks and their ancestors, and it stops at the tasks
+ * whose values haven't changed. Tasks in dependency cycles keep their values.
+ * <p>
+ * The class isn't thread safe, it's meant to be owned by a background thread, which hands the
+ * {@link Delta} of each update to the UI thread.
+ * 
+ * @author agent
+ * 
+ */
+public class CriticalPath {
+  public static final long UNKNOWN = Long.MIN_VALUE;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * Values of the tasks changed by an update.
+   */
+  public static class Delta {
+    private final boolean cleared;
+    private final long projectEnd;
+    private final long[] ids;
+    private final long[] earlyFinishes;
+    private final long[] tails;
+
+    Delta(boolean cleared, long projectEnd, int size) {
+      this.cleared = cleared;
+      this.projectEnd = projectEnd;
+      ids = new long[size];
+      earlyFinishes = new long[size];
+      tails = new long[size];
+    }
+
+    /**
+     * @return true if all the values known before the delta are gone.
+     */
+    public boolean isCleared() {
+      return cleared;
+    }
+
+    public long getProjectEnd() {
+      return projectEnd;
+    }
+
+    public int size() {
+      return ids.length;
+    }
+
+    public long getId(int i) {
+      return ids[i];
+    }
+
+    /**
+     * @return {@link CriticalPath#UNKNOWN} if the task has been removed.
+     */
+    public long getEarlyFinish(int i) {
+      return earlyFinishes[i];
+    }
+
+    public long getTail(int i) {
+      return tails[i];
+    }
+  }
+
+  private final DependencyGraph graph = new DependencyGraph();
+  private final LongIntHashMap nodes = new LongIntHashMap();
+  private int nodesNum;
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private long[] starts = new long[INITIAL_CAPACITY];
+  private long[] durations = new long[INITIAL_CAPACITY];
+  private long[] earlyFinishes = new long[INITIAL_CAPACITY];
+  private long[] tails = new long[INITIAL_CAPACITY];
+  private final BitSet known = new BitSet();
+  private long projectEnd = UNKNOWN;
+  private boolean cleared;
+
+  // tasks to recalculate by the next update
+  private final BitSet forward = new BitSet();
+  private final BitSet backward = new BitSet();
+  private final BitSet removed = new BitSet();
+
+  // state of an update
+  private final BitSet closure = new BitSet();
+  private final BitSet touched = new BitSet();
+  private final BitSet changed = new BitSet();
+  private int[] pending = new int[INITIAL_CAPACITY];
+  private int[] queue = new int[INITIAL_CAPACITY];
+
+  /**
+   * Adds the task or changes its dates.
+   */
+  public void setTask(long id, long start, long duration) {
+    int node = nodes.get(id, -1);
+    if (node < 0) {
+      node = newNode(id);
+    }
+
+    if (!known.get(node)) {
+      known.set(node);
+      removed.clear(node);
+      starts[node] = start;
+      durations[node] = duration;
+      forward.set(node);
+      backward.set(node);
+      markPredecessors(node);
+      return;
+    }
+
+    if (starts[node] != start) {
+      starts[node] = start;
+      forward.set(node);
+    }
+    if (durations[node] != duration) {
+      durations[node] = duration;
+      forward.set(node);
+      // the tails of the predecessors include the duration
+      markPredecessors(node);
+    }
+  }
+
+  public void removeTask(long id) {
+    final int node = nodes.get(id, -1);
+    if (node < 0 || !known.get(node)) {
+      return;
+    }
+
+    known.clear(node);
+    earlyFinishes[node] = UNKNOWN;
+    tails[node] = UNKNOWN;
+    removed.set(node);
+    markSuccessors(node);
+    markPredecessors(node);
+  }
+
+  /**
+   * Removes all the tasks, the dependencies are kept.
+   */
+  public void clearTasks() {
+    nodes.clear();
+    nodesNum = 0;
+    known.clear();
+    forward.clear();
+    backward.clear();
+    removed.clear();
+    projectEnd = UNKNOWN;
+    cleared = true;
+  }
+
+  public void addDependency(long predecessor, long successor) {
+    graph.add(predecessor, successor);
+    markDependency(predecessor, successor);
+  }
+
+  public void removeDependency(long predecessor, long successor) {
+    if (graph.remove(predecessor, successor)) {
+      markDependency(predecessor, successor);
+    }
+  }
+
+  public void clearDependencies() {
+    graph.clear();
+    forward.or(known);
+    backward.or(known);
+  }
+
+  public long getProjectEnd() {
+    return projectEnd;
+  }
+
+  /**
+   * @return the slack of the task as of the last update, or {@link #UNKNOWN}.
+   */
+  public long getSlack(long id) {
+    final int node = nodes.get(id, -1);
+    if (node < 0 || earlyFinishes[node] == UNKNOWN || tails[node] == UNKNOWN) {
+      return UNKNOWN;
+    }
+    return projectEnd - tails[node] - earlyFinishes[node];
+  }
+
+  /**
+   * Recalculates the tasks affected by the changes since the last update.
+   *
+   * @return the changed values, or null if nothing has been changed.
+   */
+  public Delta update() {
+    changed.clear();
+    changed.or(removed);
+    removed.clear();
+
+    updateTails();
+    updateEarlyFinishes();
+
+    long end = UNKNOWN;
+    for (int node = known.nextSetBit(0); node >= 0; node = known.nextSetBit(node+1)) {
+      end = Math.max(end, earlyFinishes[node]);
+    }
+    final boolean endChanged = (end != projectEnd);
+    projectEnd = end;
+
+    if (changed.isEmpty() && !endChanged && !cleared) {
+      return null;
+    }
+
+    final Delta delta = new Delta(cleared, projectEnd, changed.cardinality());
+    cleared = false;
+    int i = 0;
+    for (int node = changed.nextSetBit(0); node >= 0; node = changed.nextSetBit(node+1), i++) {
+      delta.ids[i] = ids[node];
+      delta.earlyFinishes[i] = (known.get(node) ? earlyFinishes[node] : UNKNOWN);
+      delta.tails[i] = (known.get(node) ? tails[node] : UNKNOWN);
+    }
+
+    return delta;
+  }
+
+  /**
+   * Visits the marked tasks and their descendants after all of their predecessors.
+   */
+  private void updateEarlyFinishes() {
+    collectClosure(forward, true);
+    forward.clear();
+
+    int head = 0, tail = 0;
+    for (int node = closure.nextSetBit(0); node >= 0; node = closure.nextSetBit(node+1)) {
+      int count = 0;
+      for (int edge = graph.firstIn(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextIn(edge)) {
+        if (isInClosure(graph.getPredecessor(edge))) {
+          count++;
+        }
+      }
+      pending[node] = count;
+      if (count == 0) {
+        queue[tail++] = node;
+      }
+    }
+
+    while (head < tail) {
+      final int node = queue[head++];
+      if (touched.get(node)) {
+        long start = starts[node];
+        for (int edge = graph.firstIn(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextIn(edge)) {
+          final int predecessor = getKnownNode(graph.getPredecessor(edge));
+          if (predecessor >= 0) {
+            start = Math.max(start, earlyFinishes[predecessor]);
+          }
+        }
+
+        final long earlyFinish = start + durations[node];
+        if (earlyFinish != earlyFinishes[node]) {
+          earlyFinishes[node] = earlyFinish;
+          changed.set(node);
+          touchSuccessors(node);
+        }
+      }
+
+      for (int edge = graph.firstOut(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextOut(edge)) {
+        final int successor = getKnownNode(graph.getSuccessor(edge));
+        if (successor >= 0 && closure.get(successor) && --pending[successor] == 0) {
+          queue[tail++] = successor;
+        }
+      }
+    }
+  }
+
+  /**
+   * Visits the marked tasks and their ancestors after all of their successors.
+   */
+  private void updateTails() {
+    collectClosure(backward, false);
+    backward.clear();
+
+    int head = 0, tail = 0;
+    for (int node = closure.nextSetBit(0); node >= 0; node = closure.nextSetBit(node+1)) {
+      int count = 0;
+      for (int edge = graph.firstOut(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextOut(edge)) {
+        if (isInClosure(graph.getSuccessor(edge))) {
+          count++;
+        }
+      }
+      pending[node] = count;
+      if (count == 0) {
+        queue[tail++] = node;
+      }
+    }
+
+    while (head < tail) {
+      final int node = queue[head++];
+      if (touched.get(node)) {
+        long length = 0;
+        for (int edge = graph.firstOut(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextOut(edge)) {
+          final int successor = getKnownNode(graph.getSuccessor(edge));
+          if (successor >= 0) {
+            length = Math.max(length, durations[successor] + tails[successor]);
+          }
+        }
+
+        if (length != tails[node]) {
+          tails[node] = length;
+          changed.set(node);
+          touchPredecessors(node);
+        }
+      }
+
+      for (int edge = graph.firstIn(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextIn(edge)) {
+        final int predecessor = getKnownNode(graph.getPredecessor(edge));
+        if (predecessor >= 0 && closure.get(predecessor) && --pending[predecessor] == 0) {
+          queue[tail++] = predecessor;
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the marked tasks and all the tasks reachable from them in the direction.
+   */
+  private void collectClosure(BitSet marked, boolean downstream) {
+    closure.clear();
+    touched.clear();
+
+    // the queue is used as a stack here
+    int top = 0;
+    for (int node = marked.nextSetBit(0); node >= 0; node = marked.nextSetBit(node+1)) {
+      if (known.get(node) && !closure.get(node)) {
+        closure.set(node);
+        touched.set(node);
+        queue[top++] = node;
+      }
+    }
+
+    while (top > 0) {
+      final int node = queue[--top];
+      if (downstream) {
+        for (int edge = graph.firstOut(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextOut(edge)) {
+          top = pushToClosure(graph.getSuccessor(edge), top);
+        }
+      } else {
+        for (int edge = graph.firstIn(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextIn(edge)) {
+          top = pushToClosure(graph.getPredecessor(edge), top);
+        }
+      }
+    }
+  }
+
+  private int pushToClosure(long id, int top) {
+    final int node = getKnownNode(id);
+    if (node >= 0 && !closure.get(node)) {
+      closure.set(node);
+      queue[top++] = node;
+    }
+    return top;
+  }
+
+  private boolean isInClosure(long id) {
+    final int node = getKnownNode(id);
+    return (node >= 0 && closure.get(node));
+  }
+
+  private int getKnownNode(long id) {
+    final int node = nodes.get(id, -1);
+    return (node >= 0 && known.get(node) ? node : -1);
+  }
+
+  private void touchSuccessors(int node) {
+    for (int edge = graph.firstOut(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextOut(edge)) {
+      final int successor = getKnownNode(graph.getSuccessor(edge));
+      if (successor >= 0) {
+        touched.set(successor);
+      }
+    }
+  }
+
+  private void touchPredecessors(int node) {
+    for (int edge = graph.firstIn(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextIn(edge)) {
+      final int predecessor = getKnownNode(graph.getPredecessor(edge));
+      if (predecessor >= 0) {
+        touched.set(predecessor);
+      }
+    }
+  }
+
+  private void markSuccessors(int node) {
+    for (int edge = graph.firstOut(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextOut(edge)) {
+      final int successor = getKnownNode(graph.getSuccessor(edge));
+      if (successor >= 0) {
+        forward.set(successor);
+      }
+    }
+  }
+
+  private void markPredecessors(int node) {
+    for (int edge = graph.firstIn(ids[node]); edge != DependencyGraph.NONE; edge = graph.nextIn(edge)) {
+      final int predecessor = getKnownNode(graph.getPredecessor(edge));
+      if (predecessor >= 0) {
+        backward.set(predecessor);
+      }
+    }
+  }
+
+  private void markDependency(long predecessor, long successor) {
+    final int from = getKnownNode(predecessor);
+    if (from >= 0) {
+      backward.set(from);
+    }
+    final int to = getKnownNode(successor);
+    if (to >= 0) {
+      forward.set(to);
+    }
+  }
+
+  private int newNode(long id) {
+    final int node = nodesNum++;
+    if (node == ids.length) {
+      final int capacity = node*2;
+      ids = copyOf(ids, capacity);
+      starts = copyOf(starts, capacity);
+      durations = copyOf(durations, capacity);
+      earlyFinishes = copyOf(earlyFinishes, capacity);
+      tails = copyOf(tails, capacity);
+      pending = new int[capacity];
+      queue = new int[capacity];
+    }
+    nodes.put(id, node);
+    ids[node] = id;
+    earlyFinishes[node] = UNKNOWN;
+    tails[node] = UNKNOWN;
+
+    return node;
+  }
+
+  private static long[] copyOf(long[] array, int length) {
+    final long[] result = new long[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+}
@@ -0,0 +1,258 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.BitSet;
+
+import com.droidek.core.util.IntervalIndex;
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Finish-to-start dependencies between tasks by their ids.
+ * <p>
+ * Edges are kept by their positions in primitive arrays, the edges of a task are linked into a list
+ * of its successors and a list of its predecessors. Every edge has a time span, i.e. the time between
+ * the end of the predecessor and the start of the successor, and the spans are indexed, so the edges
+ * crossing a time frame are found without scanning all of them.
+ * 
+ * @author agent
+ * 
+ */
+public class DependencyGraph {
+  public static final int NONE = -1;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] predecessors = new long[INITIAL_CAPACITY];
+  private long[] successors = new long[INITIAL_CAPACITY];
+  // next edge of the same predecessor/successor
+  private int[] nextOut = new int[INITIAL_CAPACITY];
+  private int[] nextIn = new int[INITIAL_CAPACITY];
+  // first edge by task id
+  private final LongIntHashMap firstOut = new LongIntHashMap();
+  private final LongIntHashMap firstIn = new LongIntHashMap();
+  private final IntervalIndex spans = new IntervalIndex();
+  private final BitSet edges = new BitSet();
+  // edge positions ever used, the removed ones are reused
+  private int limit;
+  private int size;
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    firstOut.clear();
+    firstIn.clear();
+    spans.clear();
+    edges.clear();
+    limit = 0;
+    size = 0;
+  }
+
+  /**
+   * Makes the successor depend on the predecessor.
+   *
+   * @return position of the edge, the existing one if the tasks already depend on each other.
+   */
+  public int add(long predecessor, long successor) {
+    if (predecessor == successor) {
+      throw new IllegalArgumentException("The task " + predecessor + " can't depend on itself.");
+    }
+
+    final int existing = find(predecessor, successor);
+    if (existing != NONE) {
+      return existing;
+    }
+
+    final int edge = edges.nextClearBit(0);
+    if (edge == limit) {
+      ensureCapacity(limit+1);
+      spans.add(Long.MIN_VALUE, Long.MIN_VALUE, edge);
+      limit++;
+    }
+    edges.set(edge);
+    size++;
+
+    predecessors[edge] = predecessor;
+    successors[edge] = successor;
+    nextOut[edge] = firstOut.get(predecessor, NONE);
+    firstOut.put(predecessor, edge);
+    nextIn[edge] = firstIn.get(successor, NONE);
+    firstIn.put(successor, edge);
+
+    return edge;
+  }
+
+  public boolean remove(long predecessor, long successor) {
+    final int edge = find(predecessor, successor);
+    if (edge == NONE) {
+      return false;
+    }
+
+    unlink(edge);
+    return true;
+  }
+
+  /**
+   * Removes all the edges of the task.
+   */
+  public void removeTask(long id) {
+    for (int edge = firstOut.get(id, NONE); edge != NONE; edge = firstOut.get(id, NONE)) {
+      unlink(edge);
+    }
+    for (int edge = firstIn.get(id, NONE); edge != NONE; edge = firstIn.get(id, NONE)) {
+      unlink(edge);
+    }
+  }
+
+  /**
+   * @return the edge between the tasks or {@link #NONE}.
+   */
+  public int find(long predecessor, long successor) {
+    for (int edge = firstOut(predecessor); edge != NONE; edge = nextOut(edge)) {
+      if (successors[edge] == successor) {
+        return edge;
+      }
+    }
+    return NONE;
+  }
+
+  public boolean hasPredecessors(long id) {
+    return firstIn.containsKey(id);
+  }
+
+  public boolean hasSuccessors(long id) {
+    return firstOut.containsKey(id);
+  }
+
+  /**
+   * @return the first edge to the successors of the task or {@link #NONE}.
+   */
+  public int firstOut(long id) {
+    return firstOut.get(id, NONE);
+  }
+
+  public int nextOut(int edge) {
+    return nextOut[edge];
+  }
+
+  /**
+   * @return the first edge from the predecessors of the task or {@link #NONE}.
+   */
+  public int firstIn(long id) {
+    return firstIn.get(id, NONE);
+  }
+
+  public int nextIn(int edge) {
+    return nextIn[edge];
+  }
+
+  public long getPredecessor(int edge) {
+    return predecessors[edge];
+  }
+
+  public long getSuccessor(int edge) {
+    return successors[edge];
+  }
+
+  /**
+   * Visits all the edges in no particular order.
+   */
+  public void forEach(IntervalIndex.Visitor visitor) {
+    for (int edge = edges.nextSetBit(0); edge >= 0; edge = edges.nextSetBit(edge+1)) {
+      if (!visitor.visit(edge)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Sets the time the edge takes, it's usually from the end of the predecessor to the start of the successor.
+   * The order of the moments doesn't matter.
+   */
+  public void setSpan(int edge, long from, long to) {
+    if (from > to) {
+      final long t = from;
+      from = to;
+      to = t;
+    }
+    // the edges between adjoining tasks take a moment too
+    spans.set(edge, from, (to < Long.MAX_VALUE ? to+1 : to));
+  }
+
+  /**
+   * Hides the edge from the queries, e.g. when one of its tasks isn't known.
+   */
+  public void clearSpan(int edge) {
+    spans.set(edge, Long.MIN_VALUE, Long.MIN_VALUE);
+  }
+
+  /**
+   * Visits the edges whose spans intersect <code>[from, to)</code>.
+   */
+  public void query(long from, long to, IntervalIndex.Visitor visitor) {
+    spans.query(from, to, visitor);
+  }
+
+  private void unlink(int edge) {
+    final long predecessor = predecessors[edge];
+    final int out = firstOut.get(predecessor, NONE);
+    if (out == edge) {
+      if (nextOut[edge] == NONE) {
+        firstOut.remove(predecessor);
+      } else {
+        firstOut.put(predecessor, nextOut[edge]);
+      }
+    } else {
+      int prev = out;
+      while (nextOut[prev] != edge) {
+        prev = nextOut[prev];
+      }
+      nextOut[prev] = nextOut[edge];
+    }
+
+    final long successor = successors[edge];
+    final int in = firstIn.get(successor, NONE);
+    if (in == edge) {
+      if (nextIn[edge] == NONE) {
+        firstIn.remove(successor);
+      } else {
+        firstIn.put(successor, nextIn[edge]);
+      }
+    } else {
+      int prev = in;
+      while (nextIn[prev] != edge) {
+        prev = nextIn[prev];
+      }
+      nextIn[prev] = nextIn[edge];
+    }
+
+    clearSpan(edge);
+    edges.clear(edge);
+    size--;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (predecessors.length < capacity) {
+      final int length = Math.max(capacity, predecessors.length*2);
+      predecessors = copyOf(predecessors, length);
+      successors = copyOf(successors, length);
+      nextOut = copyOf(nextOut, length);
+      nextIn = copyOf(nextIn, length);
+    }
+  }
+
+  private static long[] copyOf(long[] array, int length) {
+    final long[] result = new long[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  private static int[] copyOf(int[] array, int length) {
+    final int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+}
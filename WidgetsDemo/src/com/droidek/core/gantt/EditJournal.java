@@ -0,0 +1,250 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Undo/redo history of the task starts kept as deltas (task id, old start, new start) in a ring buffer,
+ * so the history takes a fixed amount of memory and the oldest actions are dropped when it's full.
+ * An action having more deltas than the capacity isn't kept at all, it clears the history instead, since
+ * a part of it can't be undone right.
+ * <p>
+ * The deltas recorded between {@link #beginAction()} and {@link #endAction()} are one action, which is
+ * undone and redone at once, and the deltas of a task in an action are coalesced into one, e.g. a task
+ * dragged over many slots takes a single delta. The applied deltas are the change log the host app could
+ * take as a batch by {@link #replay(Target)} or the getters.
+ * 
+ * @author agent
+ * 
+ */
+public class EditJournal {
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * Receives the starts of the tasks being undone, redone or replayed.
+   */
+  public interface Target {
+    void setStart(long id, long start);
+  }
+
+  private final long[] ids;
+  private final long[] oldStarts;
+  private final long[] newStarts;
+  private final int[] actions;
+  // the oldest delta in the ring
+  private int head;
+  // the applied deltas and the undone ones after them
+  private int size;
+  private int applied;
+  // sequence number of the oldest delta, the deltas of the current action are found by their numbers
+  private int firstSeq;
+  private int lastAction;
+  private int depth;
+  // the current action doesn't fit, its deltas aren't recorded
+  private boolean overflown;
+  private final LongIntHashMap actionDeltas = new LongIntHashMap();
+
+  public EditJournal() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity number of the deltas kept.
+   */
+  public EditJournal(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive.");
+    }
+
+    ids = new long[capacity];
+    oldStarts = new long[capacity];
+    newStarts = new long[capacity];
+    actions = new int[capacity];
+  }
+
+  public void clear() {
+    head = 0;
+    size = 0;
+    applied = 0;
+    firstSeq = 0;
+    actionDeltas.clear();
+  }
+
+  /**
+   * Starts an action, actions could be nested and the outer one is recorded.
+   */
+  public void beginAction() {
+    if (depth++ == 0) {
+      lastAction++;
+      overflown = false;
+      actionDeltas.clear();
+    }
+  }
+
+  /**
+   * Ends the action, the action which has moved its tasks back where they were is dropped.
+   */
+  public void endAction() {
+    if (depth == 0) {
+      throw new IllegalStateException("There is no action to end.");
+    }
+    if (--depth > 0 || overflown) {
+      return;
+    }
+
+    int first = applied;
+    while (first > 0 && actions[physical(first-1)] == lastAction) {
+      if (oldStarts[physical(first-1)] != newStarts[physical(first-1)]) {
+        return;
+      }
+      first--;
+    }
+    size = applied = first;
+  }
+
+  /**
+   * Records the new start of the task, the undone actions can't be redone after it.
+   */
+  public void record(long id, long oldStart, long newStart) {
+    if (depth == 0) {
+      beginAction();
+      record(id, oldStart, newStart);
+      endAction();
+      return;
+    }
+    if (overflown) {
+      return;
+    }
+
+    size = applied;
+    final int seq = actionDeltas.get(id, firstSeq-1);
+    final int delta = seq - firstSeq;
+    if (delta >= 0 && delta < size && actions[physical(delta)] == lastAction) {
+      // the task has already moved in this action
+      newStarts[physical(delta)] = newStart;
+      return;
+    }
+
+    if (size == ids.length) {
+      if (actions[head] == lastAction) {
+        // the whole ring is taken by the current action
+        clear();
+        overflown = true;
+        return;
+      }
+      dropOldestAction();
+    }
+    final int i = physical(size);
+    ids[i] = id;
+    oldStarts[i] = oldStart;
+    newStarts[i] = newStart;
+    actions[i] = lastAction;
+    actionDeltas.put(id, firstSeq+size);
+    size++;
+    applied++;
+  }
+
+  public boolean canUndo() {
+    return (applied > 0);
+  }
+
+  public boolean canRedo() {
+    return (applied < size);
+  }
+
+  /**
+   * Sets the old starts of the last applied action in the reverse order.
+   * 
+   * @return false if there is nothing to undo.
+   */
+  public boolean undo(Target target) {
+    if (applied == 0) {
+      return false;
+    }
+
+    final int action = actions[physical(applied-1)];
+    while (applied > 0 && actions[physical(applied-1)] == action) {
+      applied--;
+      target.setStart(ids[physical(applied)], oldStarts[physical(applied)]);
+    }
+    // the undone deltas mustn't be coalesced
+    actionDeltas.clear();
+    return true;
+  }
+
+  /**
+   * Sets the new starts of the first undone action.
+   * 
+   * @return false if there is nothing to redo.
+   */
+  public boolean redo(Target target) {
+    if (applied == size) {
+      return false;
+    }
+
+    final int action = actions[physical(applied)];
+    while (applied < size && actions[physical(applied)] == action) {
+      target.setStart(ids[physical(applied)], newStarts[physical(applied)]);
+      applied++;
+    }
+    return true;
+  }
+
+  /**
+   * Sets the new starts of all the applied deltas from the oldest one.
+   */
+  public void replay(Target target) {
+    for (int i = 0; i < applied; i++) {
+      target.setStart(ids[physical(i)], newStarts[physical(i)]);
+    }
+  }
+
+  /**
+   * @return number of the applied deltas, i.e. of the change log.
+   */
+  public int size() {
+    return applied;
+  }
+
+  public int getCapacity() {
+    return ids.length;
+  }
+
+  /**
+   * @param i index of the applied delta, the oldest one is 0.
+   */
+  public long getId(int i) {
+    return ids[physical(i)];
+  }
+
+  public long getOldStart(int i) {
+    return oldStarts[physical(i)];
+  }
+
+  public long getNewStart(int i) {
+    return newStarts[physical(i)];
+  }
+
+  /**
+   * @return serial number of the action of the delta, the deltas of an action have the same one.
+   */
+  public int getAction(int i) {
+    return actions[physical(i)];
+  }
+
+  private void dropOldestAction() {
+    final int action = actions[head];
+    while (size > 0 && actions[head] == action) {
+      head = (head + 1) % ids.length;
+      size--;
+      applied--;
+      firstSeq++;
+    }
+  }
+
+  private int physical(int i) {
+    return (head + i) % ids.length;
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+/**
+ * What a frame shows: the ruler labels of its slots and the task bars in pixels, where x is from the left
+ * of the frame and y is from the top of its body.
+ * <p>
+ * A snapshot is filled by the {@link SnapshotBuilder} and isn't changed after it's published, the buffers
+ * are reused once the drawing thread gives the snapshot back.
+ * 
+ * @author agent
+ * 
+ */
+public class FrameSnapshot {
+  private static final int INITIAL_CAPACITY = 16;
+
+  // a copy, the viewport requested is reused
+  private final Viewport viewport = new Viewport();
+  // the model version the snapshot has been built from
+  private long version;
+  private int barsNum;
+  // positions of the tasks in the layout and their ids, the ids tell if the position is still the task
+  private int[] positions = new int[INITIAL_CAPACITY];
+  private long[] ids = new long[INITIAL_CAPACITY];
+  // left, top, right and bottom of every bar
+  private int[] bars = new int[4*INITIAL_CAPACITY];
+  private int labelsNum;
+  private String[] groupTexts = new String[INITIAL_CAPACITY];
+  private String[] texts = new String[INITIAL_CAPACITY];
+
+  public Viewport getViewport() {
+    return viewport;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public int getBarsNum() {
+    return barsNum;
+  }
+
+  public int getPosition(int bar) {
+    return positions[bar];
+  }
+
+  public long getId(int bar) {
+    return ids[bar];
+  }
+
+  public int getLeft(int bar) {
+    return bars[4*bar];
+  }
+
+  public int getTop(int bar) {
+    return bars[4*bar+1];
+  }
+
+  public int getRight(int bar) {
+    return bars[4*bar+2];
+  }
+
+  public int getBottom(int bar) {
+    return bars[4*bar+3];
+  }
+
+  /**
+   * @return labels of the visible slots.
+   */
+  public int getLabelsNum() {
+    return labelsNum;
+  }
+
+  /**
+   * @return label of the slot group, it's empty if the slot is in the same group as the previous one.
+   */
+  public String getGroupText(int slot) {
+    return groupTexts[slot];
+  }
+
+  public String getText(int slot) {
+    return texts[slot];
+  }
+
+  void reset(Viewport viewport, long version) {
+    this.viewport.set(viewport);
+    this.version = version;
+    barsNum = 0;
+    labelsNum = 0;
+  }
+
+  void addBar(int position, long id, int left, int top, int right, int bottom) {
+    if (barsNum == ids.length) {
+      final int[] newPositions = new int[barsNum*2];
+      System.arraycopy(positions, 0, newPositions, 0, barsNum);
+      positions = newPositions;
+      final long[] newIds = new long[barsNum*2];
+      System.arraycopy(ids, 0, newIds, 0, barsNum);
+      ids = newIds;
+      final int[] newBars = new int[8*barsNum];
+      System.arraycopy(bars, 0, newBars, 0, 4*barsNum);
+      bars = newBars;
+    }
+
+    positions[barsNum] = position;
+    ids[barsNum] = id;
+    bars[4*barsNum] = left;
+    bars[4*barsNum+1] = top;
+    bars[4*barsNum+2] = right;
+    bars[4*barsNum+3] = bottom;
+    barsNum++;
+  }
+
+  void addLabel(String groupText, String text) {
+    if (labelsNum == texts.length) {
+      final String[] newGroupTexts = new String[labelsNum*2];
+      System.arraycopy(groupTexts, 0, newGroupTexts, 0, labelsNum);
+      groupTexts = newGroupTexts;
+      final String[] newTexts = new String[labelsNum*2];
+      System.arraycopy(texts, 0, newTexts, 0, labelsNum);
+      texts = newTexts;
+    }
+
+    groupTexts[labelsNum] = groupText;
+    texts[labelsNum] = text;
+    labelsNum++;
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.droidek.core.util.IntervalIndex;
+
+/**
+ * Packs intervals of an {@link IntervalIndex} into lanes, so the intervals of a lane never overlap.
+ * <p>
+ * {@link #rebuild()} does the greedy interval partitioning which needs the least lanes,
+ * {@link #place(int)} puts a new or moved interval into the first free lane, so the lanes
+ * of the other intervals are kept. Both of them take an empty interval as one millisecond long.
+ * 
+ * @author agent
+ *
+ */
+public class LaneLayout implements IntervalIndex.Visitor {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final IntervalIndex index;
+  private int[] lanes = new int[INITIAL_CAPACITY];
+  private int size;
+  // intervals number by lane
+  private int[] laneSizes = new int[INITIAL_CAPACITY];
+  private int lanesNum;
+
+  // state of the current query
+  private final BitSet busyLanes = new BitSet();
+  private int placedPosition;
+  private long placedStart, placedEnd;
+
+  // min-heap of lanes by the end of their last interval
+  private long[] heapEnds = new long[INITIAL_CAPACITY];
+  private int[] heapLanes = new int[INITIAL_CAPACITY];
+  private int heapSize;
+
+  public LaneLayout(IntervalIndex index) {
+    this.index = index;
+  }
+
+  public int getLanesNum() {
+    return lanesNum;
+  }
+
+  public int getLane(int position) {
+    return lanes[position];
+  }
+
+  public void clear() {
+    size = 0;
+    lanesNum = 0;
+    Arrays.fill(laneSizes, 0);
+  }
+
+  public void rebuild() {
+    clear();
+    size = index.size();
+    ensureCapacity(size);
+    heapSize = 0;
+
+    // visited in the order of starts
+    placedPosition = -1;
+    index.query(Long.MIN_VALUE, Long.MAX_VALUE, this);
+  }
+
+  /**
+   * Puts the interval into the first lane having no intervals overlapping it.
+   * 
+   * @param position of a new interval or an interval which has been changed in the index.
+   */
+  public void place(int position) {
+    if (position < size) {
+      // it's moving, so its lane is released
+      releaseLane(lanes[position]);
+    } else {
+      size = position+1;
+      ensureCapacity(size);
+    }
+
+    busyLanes.clear();
+    placedPosition = position;
+    placedStart = index.getStart(position);
+    placedEnd = getEnd(position);
+    // the empty intervals starting right at the start end there in the index
+    index.query(placedStart-1, placedEnd, this);
+
+    final int lane = busyLanes.nextClearBit(0);
+    lanes[position] = lane;
+    occupyLane(lane);
+  }
+
+  /**
+   * Releases the lane of the removed interval, the intervals behind it move one position down
+   * and keep their lanes.
+   */
+  public void remove(int position) {
+    if (position >= size) {
+      return;
+    }
+
+    releaseLane(lanes[position]);
+    System.arraycopy(lanes, position+1, lanes, position, size-position-1);
+    size--;
+  }
+
+  @Override
+  public boolean visit(int position) {
+    if (placedPosition >= 0) {
+      // the overlapping interval takes its lane
+      if (position != placedPosition && position < size && getEnd(position) > placedStart) {
+        busyLanes.set(lanes[position]);
+      }
+      return true;
+    }
+
+    // rebuilding, the first lane to get free is reused
+    final long start = index.getStart(position);
+    final long end = getEnd(position);
+    final int lane;
+    if (heapSize > 0 && heapEnds[0] <= start) {
+      lane = heapLanes[0];
+      heapEnds[0] = end;
+      siftDown(0);
+    } else {
+      lane = lanesNum;
+      push(end, lane);
+    }
+    lanes[position] = lane;
+    occupyLane(lane);
+
+    return true;
+  }
+
+  /**
+   * @return end of the interval, the empty one takes its start millisecond.
+   */
+  private long getEnd(int position) {
+    return Math.max(index.getEnd(position), index.getStart(position)+1);
+  }
+
+  private void occupyLane(int lane) {
+    if (lane >= lanesNum) {
+      lanesNum = lane+1;
+    }
+    if (lane >= laneSizes.length) {
+      laneSizes = copyOf(laneSizes, Math.max(lane+1, laneSizes.length*2));
+    }
+    laneSizes[lane]++;
+  }
+
+  private void releaseLane(int lane) {
+    laneSizes[lane]--;
+    // trailing empty lanes aren't shown
+    while (lanesNum > 0 && laneSizes[lanesNum-1] == 0) {
+      lanesNum--;
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (lanes.length < capacity) {
+      lanes = copyOf(lanes, Math.max(capacity, lanes.length*2));
+    }
+  }
+
+  private void push(long end, int lane) {
+    if (heapSize == heapEnds.length) {
+      final long[] ends = new long[heapSize*2];
+      System.arraycopy(heapEnds, 0, ends, 0, heapSize);
+      heapEnds = ends;
+      heapLanes = copyOf(heapLanes, heapSize*2);
+    }
+
+    int i = heapSize++;
+    while (i > 0) {
+      final int parent = (i-1) >>> 1;
+      if (heapEnds[parent] <= end) {
+        break;
+      }
+      heapEnds[i] = heapEnds[parent];
+      heapLanes[i] = heapLanes[parent];
+      i = parent;
+    }
+    heapEnds[i] = end;
+    heapLanes[i] = lane;
+  }
+
+  private void siftDown(int i) {
+    final long end = heapEnds[i];
+    final int lane = heapLanes[i];
+    while (true) {
+      int child = 2*i+1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child+1 < heapSize && heapEnds[child+1] < heapEnds[child]) {
+        child++;
+      }
+      if (end <= heapEnds[child]) {
+        break;
+      }
+      heapEnds[i] = heapEnds[child];
+      heapLanes[i] = heapLanes[child];
+      i = child;
+    }
+    heapEnds[i] = end;
+    heapLanes[i] = lane;
+  }
+
+  private static int[] copyOf(int[] array, int length) {
+    final int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+}
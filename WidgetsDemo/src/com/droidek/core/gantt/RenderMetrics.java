@@ -0,0 +1,221 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import com.droidek.core.util.Histogram;
+
+/**
+ * Counts the frames drawn, the time they took and how the touches invalidated the view, so the rendering
+ * modes can be compared on a device.
+ * <p>
+ * If it's enabled, the time of every hot path {@link Section} is recorded to its histogram and the frames
+ * over the frame budget are counted as dropped. The listener gets the metrics periodically from the drawing
+ * thread, which is the only thread the metrics are used by.
+ * 
+ * @author agent
+ * 
+ */
+public class RenderMetrics {
+  public static final long DEFAULT_FRAME_BUDGET_NANOS = 1000000000L/60;
+  public static final long DEFAULT_REPORT_PERIOD_NANOS = 1000000000L;
+
+  public enum Section {
+    // drawing of the whole view
+    FRAME,
+    RULER,
+    TIME_SLOTS,
+    TASKS,
+    // handling of a touch event
+    TOUCH,
+    // the ruler labels of a new frame start or level
+    RELABEL,
+    // the tasks put by a data request on the drawing thread
+    DATA_REQUEST,
+    // from a window request to its tasks are merged
+    DATA_WINDOW;
+  }
+
+  public interface Listener {
+    void onReport(RenderMetrics metrics);
+  }
+
+  private boolean enabled;
+  private final Histogram[] histograms = new Histogram[Section.values().length];
+  private long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+  private long droppedFrames;
+  private Listener listener;
+  private long reportPeriodNanos = DEFAULT_REPORT_PERIOD_NANOS;
+  private long lastReport;
+
+  private long frames;
+  private long drawNanos;
+  private long maxDrawNanos;
+  // invalidations by the touches
+  private long skipped;
+  private long partial;
+  private long full;
+
+  public RenderMetrics() {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new Histogram();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Turns the recording of the sections on, the frame counts are always kept.
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    lastReport = System.nanoTime();
+  }
+
+  public long getFrameBudgetNanos() {
+    return frameBudgetNanos;
+  }
+
+  public void setFrameBudgetNanos(long frameBudgetNanos) {
+    this.frameBudgetNanos = frameBudgetNanos;
+  }
+
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  public void setReportPeriodNanos(long reportPeriodNanos) {
+    this.reportPeriodNanos = reportPeriodNanos;
+  }
+
+  /**
+   * @return the start of a section to pass to {@link #end(Section, long)}, 0 if the metrics are disabled.
+   */
+  public long begin() {
+    return (enabled ? System.nanoTime() : 0);
+  }
+
+  public void end(Section section, long begin) {
+    if (enabled && begin != 0) {
+      histograms[section.ordinal()].record(System.nanoTime() - begin);
+    }
+  }
+
+  /**
+   * Records the time of a section measured elsewhere, e.g. by the data request itself.
+   */
+  public void record(Section section, long nanos) {
+    if (enabled) {
+      histograms[section.ordinal()].record(nanos);
+    }
+  }
+
+  public Histogram getHistogram(Section section) {
+    return histograms[section.ordinal()];
+  }
+
+  /**
+   * @return the frames which took longer than the frame budget.
+   */
+  public long getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  public void reset() {
+    for (final Histogram histogram : histograms) {
+      histogram.clear();
+    }
+    droppedFrames = 0;
+    frames = 0;
+    drawNanos = 0;
+    maxDrawNanos = 0;
+    skipped = 0;
+    partial = 0;
+    full = 0;
+  }
+
+  /**
+   * Records the drawing of a frame and reports the metrics to the listener if the report period is over.
+   */
+  public void recordFrame(long nanos) {
+    frames++;
+    drawNanos += nanos;
+    maxDrawNanos = Math.max(maxDrawNanos, nanos);
+    if (!enabled) {
+      return;
+    }
+
+    record(Section.FRAME, nanos);
+    if (nanos > frameBudgetNanos) {
+      droppedFrames++;
+    }
+    final long now = System.nanoTime();
+    if (listener != null && now - lastReport >= reportPeriodNanos) {
+      lastReport = now;
+      listener.onReport(this);
+    }
+  }
+
+  /**
+   * The touch hasn't changed the frame, so nothing has been redrawn.
+   */
+  public void recordSkipped() {
+    skipped++;
+  }
+
+  /**
+   * The touch has changed a part of the frame only.
+   */
+  public void recordPartial() {
+    partial++;
+  }
+
+  public void recordFull() {
+    full++;
+  }
+
+  public long getFrames() {
+    return frames;
+  }
+
+  public long getDrawNanos() {
+    return drawNanos;
+  }
+
+  public long getAverageDrawNanos() {
+    return (frames > 0 ? drawNanos/frames : 0);
+  }
+
+  public long getMaxDrawNanos() {
+    return maxDrawNanos;
+  }
+
+  public long getSkipped() {
+    return skipped;
+  }
+
+  public long getPartial() {
+    return partial;
+  }
+
+  public long getFull() {
+    return full;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder(String.format(
+        "%d frames, avg %.2f ms, max %.2f ms, %d dropped, invalidations: %d skipped, %d partial, %d full",
+        frames, getAverageDrawNanos()/1e6, maxDrawNanos/1e6, droppedFrames, skipped, partial, full));
+    for (final Section section : Section.values()) {
+      final Histogram histogram = getHistogram(section);
+      if (histogram.getCount() > 0) {
+        result.append(String.format("%n%-12s %8d p50 %.2f ms, p95 %.2f ms, p99 %.2f ms", section, histogram.getCount(),
+            histogram.getPercentile(50)/1e6, histogram.getPercentile(95)/1e6, histogram.getPercentile(99)/1e6));
+      }
+    }
+    return result.toString();
+  }
+}
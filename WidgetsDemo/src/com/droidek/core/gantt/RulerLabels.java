@@ -0,0 +1,69 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Ruler labels of the slots of a zoom level cached by the slot start without boxing: the starts map
+ * to indices of a ring of the labels, and the oldest label is dropped once the ring is full.
+ * So scrolling and zooming back only formats the slots which haven't been seen lately.
+ *
+ * @author agent
+ *
+ */
+public class RulerLabels {
+  private final ZoomLevel level;
+  private final LongIntHashMap indices = new LongIntHashMap();
+  private final long[] starts;
+  private final String[] groupTexts;
+  private final String[] texts;
+  private int size;
+  // the next label of the ring to be replaced
+  private int next;
+
+  /**
+   * @param capacity must be more than the slots a frame shows.
+   */
+  public RulerLabels(ZoomLevel level, int capacity) {
+    this.level = level;
+    starts = new long[capacity];
+    groupTexts = new String[capacity];
+    texts = new String[capacity];
+  }
+
+  /**
+   * Formats the labels of the slot unless they are cached.
+   *
+   * @return index of the labels of the slot, it's valid until the capacity of other slots is asked for.
+   */
+  public int get(long slotStart) {
+    int i = indices.get(slotStart, -1);
+    if (i >= 0) {
+      return i;
+    }
+
+    i = next;
+    if (size == starts.length) {
+      indices.remove(starts[i]);
+    } else {
+      size++;
+    }
+    starts[i] = slotStart;
+    groupTexts[i] = level.formatGroup(slotStart);
+    texts[i] = level.format(slotStart);
+    indices.put(slotStart, i);
+    next = (i + 1) % starts.length;
+
+    return i;
+  }
+
+  public String getGroupText(int i) {
+    return groupTexts[i];
+  }
+
+  public String getText(int i) {
+    return texts[i];
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Copy of the {@link CriticalPath} values the drawing thread reads, it's kept up to date by the deltas.
+ * 
+ * @author agent
+ * 
+ */
+public class SlackTable {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final LongIntHashMap entries = new LongIntHashMap();
+  private long[] earlyFinishes = new long[INITIAL_CAPACITY];
+  private long[] tails = new long[INITIAL_CAPACITY];
+  private int size;
+  private long projectEnd = CriticalPath.UNKNOWN;
+
+  public void clear() {
+    entries.clear();
+    size = 0;
+    projectEnd = CriticalPath.UNKNOWN;
+  }
+
+  public void apply(CriticalPath.Delta delta) {
+    if (delta.isCleared()) {
+      clear();
+    }
+
+    projectEnd = delta.getProjectEnd();
+    for (int i = 0; i < delta.size(); i++) {
+      int entry = entries.get(delta.getId(i), -1);
+      if (entry < 0) {
+        entry = size++;
+        if (entry == tails.length) {
+          earlyFinishes = copyOf(earlyFinishes, entry*2);
+          tails = copyOf(tails, entry*2);
+        }
+        entries.put(delta.getId(i), entry);
+      }
+      earlyFinishes[entry] = delta.getEarlyFinish(i);
+      tails[entry] = delta.getTail(i);
+    }
+  }
+
+  /**
+   * @return time the task could be delayed by without delaying the project, or {@link CriticalPath#UNKNOWN}.
+   */
+  public long getSlack(long id) {
+    final int entry = entries.get(id, -1);
+    if (entry < 0 || earlyFinishes[entry] == CriticalPath.UNKNOWN || tails[entry] == CriticalPath.UNKNOWN) {
+      return CriticalPath.UNKNOWN;
+    }
+    return projectEnd - tails[entry] - earlyFinishes[entry];
+  }
+
+  /**
+   * @return the latest finish of the task which doesn't delay the project, or {@link CriticalPath#UNKNOWN}.
+   */
+  public long getLateFinish(long id) {
+    final int entry = entries.get(id, -1);
+    if (entry < 0 || tails[entry] == CriticalPath.UNKNOWN) {
+      return CriticalPath.UNKNOWN;
+    }
+    return projectEnd - tails[entry];
+  }
+
+  /**
+   * @return true if any delay of the task delays the project.
+   */
+  public boolean isCritical(long id) {
+    return (getSlack(id) == 0);
+  }
+
+  private static long[] copyOf(long[] array, int length) {
+    final long[] result = new long[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.droidek.core.util.IntervalIndex;
+
+/**
+ * Builds {@link FrameSnapshot}s on a worker thread from its own copy of the task layout and the zoom levels,
+ * so nothing the drawing thread changes is read by the worker. The copy is kept up to date by the changes
+ * of the tasks by their positions, which are the same as the ones of the original layout, the ids
+ * are only carried to the bars.
+ * 
+ * @author agent
+ * 
+ */
+public class SnapshotBuilder implements IntervalIndex.Visitor {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int LABEL_CACHE_SIZE = 256;
+
+  private final TaskLayout layout = new TaskLayout();
+  // task ids by position
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private final List<ZoomLevel> levels = new ArrayList<ZoomLevel>();
+  // labels of the slots by the level
+  private final List<RulerLabels> labels = new ArrayList<RulerLabels>();
+  private long version;
+  private int batchDepth;
+
+  // the snapshot being built
+  private FrameSnapshot target;
+  private Viewport viewport;
+  private ZoomLevel level;
+
+  /**
+   * @param levels copies of the levels, they are used by the worker only.
+   */
+  public void setLevels(List<ZoomLevel> levels) {
+    this.levels.clear();
+    this.levels.addAll(levels);
+    labels.clear();
+    for (final ZoomLevel level : levels) {
+      labels.add(new RulerLabels(level, Math.max(LABEL_CACHE_SIZE, 2*(level.getSlotsNum()+1))));
+    }
+  }
+
+  public void setLanePacking(boolean lanePacking) {
+    layout.setLanePacking(lanePacking);
+    version++;
+  }
+
+  /**
+   * Adds the task by the end of the layout or changes the task at the position.
+   *
+   * @param position of the task, the size of the layout adds it.
+   * @param end of the task, exclusive.
+   */
+  public void setTask(int position, long id, long start, long end) {
+    if (position < layout.size()) {
+      ids[position] = id;
+      layout.set(position, start, end);
+    } else {
+      add(id, start, end);
+    }
+    version++;
+  }
+
+  /**
+   * Removes the task at the position, the tasks behind it move one position down.
+   */
+  public void removeTask(int position) {
+    layout.remove(position, ids[position]);
+    System.arraycopy(ids, position+1, ids, position, layout.size()-position);
+    version++;
+  }
+
+  /**
+   * Replaces all the tasks, e.g. after a batch has removed some of them.
+   */
+  public void setTasks(long[] ids, long[] starts, long[] ends, int size) {
+    layout.clear();
+    beginBatch();
+    for (int i = 0; i < size; i++) {
+      add(ids[i], starts[i], ends[i]);
+    }
+    commitBatch();
+    version++;
+  }
+
+  /**
+   * Starts a batch of changes like the one of the original layout, so the lanes are placed the same way
+   * and once by the end of it. Batches could be nested.
+   */
+  public void beginBatch() {
+    if (batchDepth++ == 0) {
+      layout.beginBatch();
+    }
+  }
+
+  public void commitBatch() {
+    if (--batchDepth == 0) {
+      layout.commitBatch();
+      version++;
+    }
+  }
+
+  public void clearTasks() {
+    layout.clear();
+    version++;
+  }
+
+  /**
+   * @return number of the changes so far.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public void build(Viewport viewport, FrameSnapshot target) {
+    this.target = target;
+    this.viewport = viewport;
+    this.level = levels.get(viewport.level);
+    target.reset(viewport, version);
+
+    buildLabels();
+    if (layout.isLanePacking()) {
+      layout.query(viewport.start, level.addSlots(viewport.start, viewport.slotsNum), this);
+    } else {
+      final int last = Math.min(viewport.topRow + viewport.rowsNum, layout.size());
+      for (int position = viewport.topRow; position < last; position++) {
+        addBar(position, position);
+      }
+    }
+
+    this.target = null;
+  }
+
+  @Override
+  public boolean visit(int position) {
+    final int row = layout.getRow(position);
+    if (row >= viewport.topRow && row < viewport.topRow + viewport.rowsNum) {
+      addBar(position, row);
+    }
+    return true;
+  }
+
+  private void add(long id, long start, long end) {
+    final int position = layout.size();
+    if (position == ids.length) {
+      final long[] newIds = new long[position*2];
+      System.arraycopy(ids, 0, newIds, 0, position);
+      ids = newIds;
+    }
+    ids[position] = id;
+    layout.add(id, start, end);
+  }
+
+  private void buildLabels() {
+    final RulerLabels levelLabels = labels.get(viewport.level);
+    long slotStart = viewport.start;
+    String lastGroupText = null;
+    for (int i = 0; i < viewport.slotsNum; i++) {
+      final int label = levelLabels.get(slotStart);
+      final String groupText = levelLabels.getGroupText(label);
+      if (groupText.equals(lastGroupText)) {
+        target.addLabel("", levelLabels.getText(label));
+      } else {
+        lastGroupText = groupText;
+        target.addLabel(lastGroupText, levelLabels.getText(label));
+      }
+      slotStart = level.addSlots(slotStart, 1);
+    }
+  }
+
+  private void addBar(int position, int row) {
+    final long start = layout.getStart(position);
+    // the last moment of the task, empty tasks still take their slot
+    final long end = Math.max(start, layout.getEnd(position)-1);
+    final long startSlot = level.getSlot(viewport.start, start);
+    final long complSlot = level.getSlot(viewport.start, end);
+    if (complSlot < 0 || startSlot >= viewport.slotsNum) {
+      return;
+    }
+
+    final int left = (int) Math.max(-1, startSlot)*viewport.slotW - viewport.scrollX;
+    final int right = (int) (Math.min(viewport.slotsNum, complSlot)+1)*viewport.slotW - viewport.scrollX;
+    final int top = (row - viewport.topRow)*viewport.rowH - viewport.scrollY;
+    target.addBar(position, ids[position], left+1, top+1, right-1, top+viewport.rowH-1);
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The tasks and the state of the view kept in a file, so the view shows them at once on the next start
+ * while the fresh tasks are loaded.
+ * <p>
+ * The file is a header, the name table and the columns of a {@link TaskStore}, the columns are read
+ * right from the memory mapped file. The mapping is checked as a whole when it's opened, so a corrupted
+ * file is rejected before any of its rows is used:
+ * <pre>
+ * int magic, int version
+ * long start period, int zoom level, int top row, long edited task id
+ * int tasks, int names
+ * names: int length, UTF-8 bytes
+ * long ids[tasks], long starts[tasks], int durations[tasks], int name indices[tasks]
+ * </pre>
+ * 
+ * @author agent
+ * 
+ */
+public class SnapshotFile {
+  public static final long NO_TASK = Long.MIN_VALUE;
+
+  private static final int MAGIC = 0x474e5453;
+  private static final int VERSION = 1;
+  private static final String CHARSET = "UTF-8";
+
+  private final ByteBuffer buffer;
+  private final long startPeriod;
+  private final int zoomLevel;
+  private final int topRow;
+  private final long editedTaskId;
+  private final int size;
+  private final String[] names;
+  private final int ids;
+  private final int starts;
+  private final int durations;
+  private final int nameIndices;
+
+  private SnapshotFile(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Not a snapshot of this version.");
+    }
+
+    startPeriod = buffer.getLong();
+    zoomLevel = buffer.getInt();
+    topRow = buffer.getInt();
+    editedTaskId = buffer.getLong();
+    size = buffer.getInt();
+    final int namesNum = buffer.getInt();
+    // every name takes its length at least
+    if (namesNum < 0 || namesNum > buffer.remaining()/4) {
+      throw new IOException("The snapshot is corrupted.");
+    }
+    names = new String[namesNum];
+    for (int i = 0; i < names.length; i++) {
+      final int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        throw new IOException("The snapshot is corrupted.");
+      }
+      final byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      names[i] = new String(bytes, CHARSET);
+    }
+    // every row takes 24 bytes
+    if (size < 0 || (long) size*24 != buffer.remaining()) {
+      throw new IOException("The snapshot is corrupted.");
+    }
+
+    ids = buffer.position();
+    starts = ids + size*8;
+    durations = starts + size*8;
+    nameIndices = durations + size*4;
+    for (int row = 0; row < size; row++) {
+      final int index = buffer.getInt(nameIndices + row*4);
+      if (index < 0 || index >= names.length) {
+        throw new IOException("The snapshot is corrupted.");
+      }
+    }
+  }
+
+  /**
+   * Maps the file and checks it, only the header and the names are read at once.
+   * 
+   * @throws IOException if there is no file or it's not a snapshot.
+   */
+  public static SnapshotFile map(File file) throws IOException {
+    final FileInputStream in = new FileInputStream(file);
+    try {
+      final FileChannel channel = in.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("The snapshot is corrupted.");
+      }
+      // the mapping outlives the channel
+      return new SnapshotFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (RuntimeException e) {
+      // the buffer underflows on a truncated file
+      throw new IOException("The snapshot is corrupted.");
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the snapshot next to the file and then replaces the file, so the snapshot being read is never
+   * a partially written one.
+   * 
+   * @param editedTaskId or {@link #NO_TASK}.
+   */
+  public static void write(File file, long startPeriod, int zoomLevel, int topRow, long editedTaskId, TaskStore tasks)
+      throws IOException {
+    final File temp = new File(file.getPath() + ".tmp");
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(startPeriod);
+      out.writeInt(zoomLevel);
+      out.writeInt(topRow);
+      out.writeLong(editedTaskId);
+      out.writeInt(tasks.size());
+      out.writeInt(tasks.getNamesNum());
+      for (int i = 0; i < tasks.getNamesNum(); i++) {
+        final byte[] bytes = encode(tasks.getNameAt(i));
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+
+      for (int row = 0; row < tasks.size(); row++) {
+        out.writeLong(tasks.getId(row));
+      }
+      for (int row = 0; row < tasks.size(); row++) {
+        out.writeLong(tasks.getStart(row));
+      }
+      for (int row = 0; row < tasks.size(); row++) {
+        out.writeInt(tasks.getDuration(row));
+      }
+      for (int row = 0; row < tasks.size(); row++) {
+        out.writeInt(tasks.getNameIndex(row));
+      }
+    } finally {
+      out.close();
+    }
+
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      throw new IOException("Can't replace " + file);
+    }
+  }
+
+  public long getStartPeriod() {
+    return startPeriod;
+  }
+
+  /**
+   * @return index of the zoom level in the ladder.
+   */
+  public int getZoomLevel() {
+    return zoomLevel;
+  }
+
+  public int getTopRow() {
+    return topRow;
+  }
+
+  /**
+   * @return id of the edited task or {@link #NO_TASK}.
+   */
+  public long getEditedTaskId() {
+    return editedTaskId;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getId(int row) {
+    return buffer.getLong(ids + row*8);
+  }
+
+  public long getStart(int row) {
+    return buffer.getLong(starts + row*8);
+  }
+
+  /**
+   * @return duration in hours.
+   */
+  public int getDuration(int row) {
+    return buffer.getInt(durations + row*4);
+  }
+
+  public String getName(int row) {
+    return names[buffer.getInt(nameIndices + row*4)];
+  }
+
+  private static byte[] encode(String name) {
+    try {
+      return name.getBytes(CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      // every platform has UTF-8
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.BitSet;
+
+import com.droidek.core.util.IntervalIndex;
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Rows of the tasks and the lookups by time and row.
+ * <p>
+ * The tasks are kept by their positions, which are the positions of the tasks in the owner's list.
+ * A task takes a row of its own, or a lane shared with non-overlapping tasks if the lane packing is on.
+ * 
+ * @author agent
+ * 
+ */
+public class TaskLayout {
+  private final IntervalIndex index = new IntervalIndex();
+  private final LongIntHashMap ids = new LongIntHashMap();
+  private final LaneLayout lanes = new LaneLayout(index);
+  private final RowFinder rowFinder = new RowFinder();
+  private boolean lanePacking;
+  // the lanes are placed once by the end of the batch
+  private boolean batch;
+  // the batch has added tasks, so all of them are packed again, or only the moved ones are placed
+  private boolean batchAdded;
+  private final BitSet batchMoved = new BitSet();
+  // changed with the positions or the rows, so the derived structures know they are stale
+  private int modCount;
+
+  public int size() {
+    return index.size();
+  }
+
+  public void clear() {
+    modCount++;
+    index.clear();
+    ids.clear();
+    lanes.clear();
+    batchAdded = batch;
+    batchMoved.clear();
+  }
+
+  /**
+   * @param end of the task, exclusive.
+   * @return position of the task.
+   */
+  public int add(long id, long start, long end) {
+    modCount++;
+    final int position = index.add(start, end, index.size());
+    ids.put(id, position);
+    if (batch) {
+      batchAdded = true;
+    } else if (lanePacking) {
+      lanes.place(position);
+    }
+
+    return position;
+  }
+
+  /**
+   * Must be called when start or duration of the task has been changed.
+   */
+  public void set(int position, long start, long end) {
+    modCount++;
+    index.set(position, start, end);
+    if (batch) {
+      batchMoved.set(position);
+    } else if (lanePacking) {
+      // only the moved task could change its lane
+      lanes.place(position);
+    }
+  }
+
+  /**
+   * Removes the task in place, the tasks behind it move one position down and keep their rows
+   * if the lane packing is on.
+   *
+   * @param id of the task at the position.
+   */
+  public void remove(int position, long id) {
+    modCount++;
+    index.remove(position);
+    if (ids.get(id, -1) == position) {
+      ids.remove(id);
+    }
+    ids.decrementValuesAbove(position);
+    lanes.remove(position);
+    if (batch) {
+      // the moved positions have shifted, all the tasks are packed again
+      batchAdded = true;
+    }
+  }
+
+  /**
+   * @return position of the task added last by the id, or -1.
+   */
+  public int indexOf(long id) {
+    return ids.get(id, -1);
+  }
+
+  public boolean contains(long id) {
+    return ids.containsKey(id);
+  }
+
+  public long getStart(int position) {
+    return index.getStart(position);
+  }
+
+  public long getEnd(int position) {
+    return index.getEnd(position);
+  }
+
+  /**
+   * Defers placing the added and changed tasks into the lanes till {@link #commitBatch()}.
+   */
+  public void beginBatch() {
+    batch = true;
+    // the index is rebuilt once too
+    index.beginBatch();
+  }
+
+  /**
+   * Packs all the tasks into the lanes at once, which is cheaper than placing them one by one. The batch
+   * which has only moved tasks places the moved ones, so the rest of the tasks keep their lanes.
+   */
+  public void commitBatch() {
+    modCount++;
+    batch = false;
+    index.endBatch();
+    if (lanePacking) {
+      if (batchAdded) {
+        lanes.rebuild();
+      } else {
+        for (int i = batchMoved.nextSetBit(0); i >= 0; i = batchMoved.nextSetBit(i+1)) {
+          lanes.place(i);
+        }
+      }
+    }
+    batchAdded = false;
+    batchMoved.clear();
+  }
+
+  /**
+   * @return number of the changes so far, it only tells whether the layout has changed.
+   */
+  public int getModCount() {
+    return modCount;
+  }
+
+  public boolean isLanePacking() {
+    return lanePacking;
+  }
+
+  public void setLanePacking(boolean lanePacking) {
+    modCount++;
+    this.lanePacking = lanePacking;
+    if (lanePacking) {
+      lanes.rebuild();
+    } else {
+      lanes.clear();
+    }
+  }
+
+  public int getRowCount() {
+    return (lanePacking ? lanes.getLanesNum() : index.size());
+  }
+
+  public int getRow(int position) {
+    return (lanePacking ? lanes.getLane(position) : position);
+  }
+
+  /**
+   * Visits the tasks intersecting [from, to) in the order of their starts.
+   */
+  public void query(long from, long to, IntervalIndex.Visitor visitor) {
+    index.query(from, to, visitor);
+  }
+
+  /**
+   * @return number of the tasks intersecting [from, to).
+   */
+  public int count(long from, long to) {
+    return index.count(from, to);
+  }
+
+  /**
+   * Finds the upper task intersecting [from, to) among the rows [fromRow, toRow).
+   *
+   * @return position of the task, or -1 if there is no such task.
+   */
+  public int find(long from, long to, int fromRow, int toRow) {
+    rowFinder.reset(fromRow, toRow);
+    index.query(from, to, rowFinder);
+
+    return rowFinder.position;
+  }
+
+  private class RowFinder implements IntervalIndex.Visitor {
+    private int fromRow, toRow;
+    private int row;
+    private int position;
+
+    public void reset(int fromRow, int toRow) {
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+      row = -1;
+      position = -1;
+    }
+
+    @Override
+    public boolean visit(int value) {
+      final int valueRow = getRow(value);
+      if (valueRow >= fromRow && valueRow < toRow && (row < 0 || valueRow < row)) {
+        row = valueRow;
+        position = value;
+      }
+      return (row != fromRow);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Tasks kept column by column in primitive arrays, so a task costs a few array slots instead of an object
+ * with its own fields, headers and references. The names are interned, a repeated name is kept once.
+ * <p>
+ * The tasks are addressed by their rows, i.e. the order they have been added in.
+ * 
+ * @author agent
+ * 
+ */
+public class TaskStore {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private long[] starts = new long[INITIAL_CAPACITY];
+  private int[] durations = new int[INITIAL_CAPACITY];
+  private int[] names = new int[INITIAL_CAPACITY];
+  private int size;
+
+  private final LongIntHashMap rows = new LongIntHashMap();
+  private final List<String> nameTable = new ArrayList<String>();
+  private final Map<String, Integer> nameIndices = new HashMap<String, Integer>();
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    size = 0;
+    rows.clear();
+    nameTable.clear();
+    nameIndices.clear();
+  }
+
+  /**
+   * @param duration in hours.
+   * @return row of the task.
+   */
+  public int add(long id, String name, long start, int duration) {
+    if (size == ids.length) {
+      ensureCapacity(size*2);
+    }
+    ids[size] = id;
+    starts[size] = start;
+    durations[size] = duration;
+    names[size] = intern(name);
+    rows.put(id, size);
+
+    return size++;
+  }
+
+  /**
+   * @return row of the task added last by the id, or -1.
+   */
+  public int indexOf(long id) {
+    return rows.get(id, -1);
+  }
+
+  public long getId(int row) {
+    return ids[row];
+  }
+
+  public String getName(int row) {
+    return nameTable.get(names[row]);
+  }
+
+  public long getStart(int row) {
+    return starts[row];
+  }
+
+  /**
+   * @return duration in hours.
+   */
+  public int getDuration(int row) {
+    return durations[row];
+  }
+
+  public void set(int row, long start, int duration) {
+    starts[row] = start;
+    durations[row] = duration;
+  }
+
+  /**
+   * @return index of the name of the task in the name table.
+   */
+  public int getNameIndex(int row) {
+    return names[row];
+  }
+
+  public String getNameAt(int nameIndex) {
+    return nameTable.get(nameIndex);
+  }
+
+  public void setName(int row, String name) {
+    names[row] = intern(name);
+  }
+
+  /**
+   * @return number of the distinct names.
+   */
+  public int getNamesNum() {
+    return nameTable.size();
+  }
+
+  /**
+   * Reserves room for the tasks, so adding them doesn't copy the columns.
+   */
+  public void ensureCapacity(int capacity) {
+    if (ids.length < capacity) {
+      ids = copyOf(ids, capacity);
+      starts = copyOf(starts, capacity);
+      durations = copyOf(durations, capacity);
+      names = copyOf(names, capacity);
+    }
+  }
+
+  private int intern(String name) {
+    final Integer index = nameIndices.get(name);
+    if (index != null) {
+      return index;
+    }
+
+    final int newIndex = nameTable.size();
+    nameTable.add(name);
+    nameIndices.put(name, newIndex);
+    return newIndex;
+  }
+
+  private static long[] copyOf(long[] array, int length) {
+    final long[] result = new long[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  private static int[] copyOf(int[] array, int length) {
+    final int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+/**
+ * Maps epoch millis to slots of a time frame using plain long arithmetic,
+ * or the calendar if the slots are months of a {@link ZoomLevel}.
+ * <p>
+ * The frame starts at {@link #getStart()} and consists of {@link #getSlotsNum()} slots of
+ * {@link #getSlotMillis()} each. Slots before the frame are negative, slots after it are
+ * greater or equal to the slots number.
+ * 
+ * @author agent
+ *
+ */
+public class Timeline {
+  private long start;
+  private long slotMillis = 1;
+  private int slotsNum;
+  // set for the calendar slots only
+  private ZoomLevel level;
+
+  public long getStart() {
+    return start;
+  }
+
+  public void setStart(long start) {
+    this.start = start;
+  }
+
+  public long getSlotMillis() {
+    return slotMillis;
+  }
+
+  public int getSlotsNum() {
+    return slotsNum;
+  }
+
+  public void setSlots(int slotsNum, long slotMillis) {
+    this.slotsNum = slotsNum;
+    this.slotMillis = slotMillis;
+    this.level = null;
+  }
+
+  public void setSlots(int slotsNum, ZoomLevel level) {
+    setSlots(slotsNum, level.getSlotMillis());
+    if (level.isCalendar()) {
+      this.level = level;
+    }
+  }
+
+  public long getCompl() {
+    return getSlotStart(slotsNum);
+  }
+
+  public void shift(int toSlots) {
+    start = getSlotStart(toSlots);
+  }
+
+  public long getSlotStart(int slot) {
+    if (level != null) {
+      return level.addSlots(start, slot);
+    }
+    return start + slotMillis*slot;
+  }
+
+  /**
+   * @return the slot containing the moment.
+   */
+  public int getSlot(long millis) {
+    final long slot = (level != null ? level.getSlot(start, millis) : floorDiv(millis - start, slotMillis));
+    // far away moments are only compared with the frame bounds
+    if (slot > Integer.MAX_VALUE) {
+      return Integer.MAX_VALUE;
+    }
+    if (slot < Integer.MIN_VALUE) {
+      return Integer.MIN_VALUE;
+    }
+
+    return (int) slot;
+  }
+
+  public int getStartSlot(long startMillis) {
+    return getSlot(startMillis);
+  }
+
+  /**
+   * @return the last slot covered by the interval, which is the start slot for empty intervals.
+   */
+  public int getComplSlot(long startMillis, long durationMillis) {
+    if (durationMillis <= 0) {
+      return getSlot(startMillis);
+    }
+
+    return getSlot(startMillis + durationMillis - 1);
+  }
+
+  public static long floorDiv(long x, long y) {
+    final long q = x / y;
+    return ((x % y != 0) && ((x ^ y) < 0) ? q - 1 : q);
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+/**
+ * Scroll and zoom state of a frame a {@link FrameSnapshot} is built for. The viewports are reused
+ * by the drawing thread and the worker, so a snapshot keeps a copy of the one it's built for.
+ * 
+ * @author agent
+ * 
+ */
+public class Viewport {
+  public long start;
+  // index of the zoom level
+  public int level;
+  public int slotW;
+  // visible slots including the partially visible one
+  public int slotsNum;
+  // pixel offset inside the start slot
+  public int scrollX;
+  public int topRow;
+  // visible rows including the partially visible one
+  public int rowsNum;
+  public int rowH;
+  // pixel offset inside the top row
+  public int scrollY;
+
+  public Viewport() {
+  }
+
+  public Viewport(long start, int level, int slotW, int slotsNum, int scrollX, int topRow, int rowsNum, int rowH, int scrollY) {
+    set(start, level, slotW, slotsNum, scrollX, topRow, rowsNum, rowH, scrollY);
+  }
+
+  public void set(Viewport viewport) {
+    set(viewport.start, viewport.level, viewport.slotW, viewport.slotsNum, viewport.scrollX, viewport.topRow,
+        viewport.rowsNum, viewport.rowH, viewport.scrollY);
+  }
+
+  public void set(long start, int level, int slotW, int slotsNum, int scrollX, int topRow, int rowsNum, int rowH, int scrollY) {
+    this.start = start;
+    this.level = level;
+    this.slotW = slotW;
+    this.slotsNum = slotsNum;
+    this.scrollX = scrollX;
+    this.topRow = topRow;
+    this.rowsNum = rowsNum;
+    this.rowH = rowH;
+    this.scrollY = scrollY;
+  }
+
+  public boolean equals(long start, int level, int slotW, int slotsNum, int scrollX, int topRow, int rowsNum, int rowH, int scrollY) {
+    return (this.start == start && this.level == level && this.slotW == slotW && this.slotsNum == slotsNum
+        && this.scrollX == scrollX && this.topRow == topRow && this.rowsNum == rowsNum && this.rowH == rowH
+        && this.scrollY == scrollY);
+  }
+}
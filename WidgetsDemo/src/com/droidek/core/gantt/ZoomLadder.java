@@ -0,0 +1,143 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Zoom levels ordered from the coarsest to the finest one and the current level among them.
+ * 
+ * @author agent
+ * 
+ */
+public class ZoomLadder {
+  private final List<ZoomLevel> levels = new ArrayList<ZoomLevel>();
+  private int current = -1;
+  // the level a new frame starts with
+  private int initial;
+
+  /**
+   * @return levels from years by quarters, months and weeks to minutes, a new frame starts with days.
+   */
+  public static ZoomLadder createDefault() {
+    final ZoomLadder ladder = new ZoomLadder();
+    ladder.add(ZoomLevel.ofMonths(5, 12, "", "%tY"));
+    ladder.add(ZoomLevel.ofMonths(4, 3, "%tY", "%tb"));
+    ladder.add(ZoomLevel.ofMonths(6, 1, "%tY", "%tb"));
+    ladder.add(new ZoomLevel(6, 7*ZoomLevel.DAY_IN_MILLIS, "%tB, %<tY", "%td %<tb"));
+    ladder.add(new ZoomLevel(7, ZoomLevel.DAY_IN_MILLIS, "%tB, %<tY", "%td %<tb"));
+    ladder.add(new ZoomLevel(5, ZoomLevel.DAY_IN_MILLIS, "%tB, %<tY", "%td %<tb"));
+    ladder.add(new ZoomLevel(6, 4*ZoomLevel.HOUR_IN_MILLIS, "%td %<tb", "%tI%<tp"));
+    ladder.add(new ZoomLevel(8, ZoomLevel.HOUR_IN_MILLIS, "%td %<tb", "%tI%<tp"));
+    ladder.add(new ZoomLevel(4, 15*ZoomLevel.MINUTE_IN_MILLIS, "%td %<tb", "%tR"));
+    ladder.add(new ZoomLevel(6, 5*ZoomLevel.MINUTE_IN_MILLIS, "%td %<tb", "%tR"));
+    ladder.setInitialIndex(5);
+
+    return ladder;
+  }
+
+  public void add(ZoomLevel level) {
+    levels.add(level);
+    if (current < 0) {
+      current = 0;
+    }
+  }
+
+  public void clear() {
+    levels.clear();
+    current = -1;
+    initial = 0;
+  }
+
+  public int size() {
+    return levels.size();
+  }
+
+  public ZoomLevel get(int i) {
+    return levels.get(i);
+  }
+
+  public int getCurrentIndex() {
+    return current;
+  }
+
+  public void setCurrentIndex(int current) {
+    if (current < 0 || current >= levels.size()) {
+      throw new IndexOutOfBoundsException("Level " + current + " of " + levels.size());
+    }
+    this.current = current;
+  }
+
+  public int getInitialIndex() {
+    return initial;
+  }
+
+  public void setInitialIndex(int initial) {
+    if (initial < 0 || initial >= levels.size()) {
+      throw new IndexOutOfBoundsException("Level " + initial + " of " + levels.size());
+    }
+    this.initial = initial;
+  }
+
+  /**
+   * @return the finest level whose natural span isn't shorter than the span, i.e. the level which shows
+   * the span by its natural slots or by wider ones, or the coarsest level for the longer spans.
+   */
+  public int findLevel(double span) {
+    for (int i = levels.size()-1; i > 0; i--) {
+      if (levels.get(i).getSpan() >= span) {
+        return i;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return the shortest span, i.e. a single slot of the finest level across the frame.
+   */
+  public long getMinSpan() {
+    return levels.get(levels.size()-1).getSlotMillis();
+  }
+
+  /**
+   * @return the longest span, i.e. the natural span of the coarsest level.
+   */
+  public long getMaxSpan() {
+    return levels.get(0).getSpan();
+  }
+
+  public ZoomLevel getCurrent() {
+    return (current >= 0 ? levels.get(current) : null);
+  }
+
+  public boolean canZoomIn() {
+    return (current < levels.size()-1);
+  }
+
+  public boolean canZoomOut() {
+    return (current > 0);
+  }
+
+  /**
+   * @return the next finer level which becomes the current one.
+   */
+  public ZoomLevel zoomIn() {
+    if (!canZoomIn()) {
+      throw new NoSuchElementException();
+    }
+    return levels.get(++current);
+  }
+
+  /**
+   * @return the next coarser level which becomes the current one.
+   */
+  public ZoomLevel zoomOut() {
+    if (!canZoomOut()) {
+      throw new NoSuchElementException();
+    }
+    return levels.get(--current);
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.util.Calendar;
+
+/**
+ * A step of the {@link ZoomLadder}: the frame shows {@link #getSlotsNum()} slots of
+ * {@link #getSlotMillis()} each and labels them by the ruler formats.
+ * <p>
+ * Slots of whole months, e.g. months, quarters or years, follow the calendar, so they are as long as
+ * their months are and {@link #getSlotMillis()} is only their average length. The calendar is reused
+ * by the calculations, so a level must be used by one thread.
+ * 
+ * @author agent
+ * 
+ */
+public class ZoomLevel {
+  public static final long MINUTE_IN_MILLIS = 60*1000;
+  public static final long HOUR_IN_MILLIS = 60*MINUTE_IN_MILLIS;
+  public static final long DAY_IN_MILLIS = 24*HOUR_IN_MILLIS;
+  // of the Gregorian calendar, i.e. 365.2425 days a year
+  public static final long MONTH_IN_MILLIS = 2629746000L;
+
+  private final int slotsNum;
+  private final long slotMillis;
+  // months per slot, 0 if the slots are of the fixed length
+  private final int slotMonths;
+  private final String rulerGroupFormat;
+  private final String rulerFormat;
+  private final Calendar calendar = Calendar.getInstance();
+
+  /**
+   * @param rulerGroupFormat {@link String#format(String, Object...)} pattern of the slot group, e.g. month or day.
+   * @param rulerFormat pattern of the slot itself.
+   */
+  public ZoomLevel(int slotsNum, long slotMillis, String rulerGroupFormat, String rulerFormat) {
+    this(slotsNum, slotMillis, 0, rulerGroupFormat, rulerFormat);
+  }
+
+  private ZoomLevel(int slotsNum, long slotMillis, int slotMonths, String rulerGroupFormat, String rulerFormat) {
+    if (slotsNum <= 0 || slotMillis <= 0) {
+      throw new IllegalArgumentException("Slots number and size must be positive.");
+    }
+
+    this.slotsNum = slotsNum;
+    this.slotMillis = slotMillis;
+    this.slotMonths = slotMonths;
+    this.rulerGroupFormat = rulerGroupFormat;
+    this.rulerFormat = rulerFormat;
+  }
+
+  /**
+   * Copies the level, e.g. for another thread, since a level must be used by one thread.
+   */
+  public ZoomLevel(ZoomLevel level) {
+    this(level.slotsNum, level.slotMillis, level.slotMonths, level.rulerGroupFormat, level.rulerFormat);
+  }
+
+  /**
+   * Creates a level of the calendar slots, e.g. 1 month a slot for months, 3 for quarters and 12 for years.
+   */
+  public static ZoomLevel ofMonths(int slotsNum, int slotMonths, String rulerGroupFormat, String rulerFormat) {
+    if (slotMonths <= 0) {
+      throw new IllegalArgumentException("Months per slot must be positive.");
+    }
+    return new ZoomLevel(slotsNum, MONTH_IN_MILLIS*slotMonths, slotMonths, rulerGroupFormat, rulerFormat);
+  }
+
+  public int getSlotsNum() {
+    return slotsNum;
+  }
+
+  public long getSlotMillis() {
+    return slotMillis;
+  }
+
+  /**
+   * @return true if the slots are months of the calendar.
+   */
+  public boolean isCalendar() {
+    return (slotMonths > 0);
+  }
+
+  /**
+   * @return time the frame shows at the natural slot width.
+   */
+  public long getSpan() {
+    return slotMillis*slotsNum;
+  }
+
+  /**
+   * @return width of a slot in the frame of the width, the remainder isn't used.
+   */
+  public int getSlotWidth(int frameWidth) {
+    return frameWidth/slotsNum;
+  }
+
+  /**
+   * @return width of a slot in the frame of the width which shows the span, i.e. the level zoomed
+   * in between its natural width and the next level.
+   */
+  public int getSlotWidth(int frameWidth, double span) {
+    return Math.max(1, (int) (frameWidth*(double) slotMillis/span));
+  }
+
+  /**
+   * @return start of the slot which is the slots away from the slot start.
+   */
+  public long addSlots(long slotStart, long slots) {
+    if (slotMonths == 0) {
+      return slotStart + slotMillis*slots;
+    }
+
+    calendar.setTimeInMillis(slotStart);
+    calendar.add(Calendar.MONTH, (int) (slotMonths*slots));
+    return calendar.getTimeInMillis();
+  }
+
+  /**
+   * @return the slot containing the moment, counted from the slot start.
+   */
+  public long getSlot(long slotStart, long millis) {
+    if (slotMonths == 0) {
+      return Timeline.floorDiv(millis - slotStart, slotMillis);
+    }
+
+    long slot = Timeline.floorDiv(monthOf(millis) - monthOf(slotStart), slotMonths);
+    // the months differ by the days of the slot start
+    if (addSlots(slotStart, slot) > millis) {
+      slot--;
+    } else if (addSlots(slotStart, slot+1) <= millis) {
+      slot++;
+    }
+
+    return slot;
+  }
+
+  public String formatGroup(long slotStart) {
+    return String.format(rulerGroupFormat, slotStart);
+  }
+
+  public String format(long slotStart) {
+    return String.format(rulerFormat, slotStart);
+  }
+
+  /**
+   * Aligns start of a frame to the day limit if the slots are days or longer,
+   * and to the first month of the slot for the calendar slots.
+   */
+  public long alignStart(long start) {
+    if (slotMillis < DAY_IN_MILLIS) {
+      return start;
+    }
+
+    calendar.setTimeInMillis(start);
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+    calendar.set(Calendar.MINUTE, 0);
+    if (slotMonths > 0) {
+      calendar.set(Calendar.SECOND, 0);
+      calendar.set(Calendar.MILLISECOND, 0);
+      calendar.set(Calendar.DAY_OF_MONTH, 1);
+      calendar.set(Calendar.MONTH, calendar.get(Calendar.MONTH) - calendar.get(Calendar.MONTH) % slotMonths);
+    }
+
+    return calendar.getTimeInMillis();
+  }
+
+  private long monthOf(long millis) {
+    calendar.setTimeInMillis(millis);
+    return calendar.get(Calendar.YEAR)*12L + calendar.get(Calendar.MONTH);
+  }
+}
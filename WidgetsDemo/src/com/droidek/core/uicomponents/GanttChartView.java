@@ -5,25 +5,62 @@
  */
 package com.droidek.core.uicomponents;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
+import android.graphics.Path;
 import android.graphics.Point;
 import android.graphics.Rect;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.FloatMath;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
-
+import android.view.ViewConfiguration;
+import android.widget.Scroller;
+
+import com.droidek.core.gantt.CriticalPath;
+import com.droidek.core.gantt.DependencyGraph;
+import com.droidek.core.gantt.EditJournal;
+import com.droidek.core.gantt.FrameSnapshot;
+import com.droidek.core.gantt.RenderMetrics;
+import com.droidek.core.gantt.RulerLabels;
+import com.droidek.core.gantt.SlackTable;
+import com.droidek.core.gantt.SnapshotFile;
+import com.droidek.core.gantt.SnapshotBuilder;
+import com.droidek.core.gantt.TaskLayout;
+import com.droidek.core.gantt.TaskStore;
+import com.droidek.core.gantt.Timeline;
+import com.droidek.core.gantt.Viewport;
+import com.droidek.core.gantt.ZoomLadder;
+import com.droidek.core.gantt.ZoomLevel;
+import com.droidek.core.util.IntervalIndex;
 import com.droidek.core.util.Ptr;
 
 /**
@@ -32,17 +69,69 @@ import com.droidek.core.util.Ptr;
  */
 public class GanttChartView extends View {
   private static final int DEFAULT_DURATION = 1;
-  private static final int HOUR_IN_MILLIS = 60*60*1000;
+  private static final long HOUR_IN_MILLIS = ZoomLevel.HOUR_IN_MILLIS;
   private static final int ROW_H = 48;
   private static final int RULER_H = ROW_H*2;
-
-  private int tasksNum = 7;
+  private static final int RULER_CACHE_SIZE = 256;
+  private static final int TILE_SLOTS = 2;
+  private static final int TILE_CACHE_SIZE = 4*1024*1024; // in bytes
+  private static final int TILE_POOL_SIZE = 8; // evicted tiles kept for the new ones
+  private static final int PREFETCH_FRAMES = 1; // on each side of the frame
+  private static final int MAX_LOADED_FRAMES = 4; // on each side of the frame, the tasks beyond are dropped
+  private static final int DEFAULT_TASKS_NUM = 7;
+  private static final int ROWS_OVERSCAN = 8; // on each side of the frame
+  private static final int DEFAULT_DETAIL_THRESHOLD = 32; // tasks per slot
+  private static final int LINK_STEP = 8; // horizontal part of a dependency link
+  private static final int ARROW_SIZE = 5;
+  // View.LAYER_TYPE_* of Honeycomb
+  private static final int LAYER_TYPE_NONE = 0;
+  private static final int LAYER_TYPE_HARDWARE = 2;
+
+  // rows fitting into the view height
+  private int tasksNum = DEFAULT_TASKS_NUM;
 
   private DisplayMetrics metrics;
   private Rect size;
 
   private TimeFrame frame;
+  // links between the tasks by their ids, they are kept along with relayouts
+  private DependencyGraph dependencies = new DependencyGraph();
+  private ZoomLadder zoomLadder = ZoomLadder.createDefault();
+  // critical path is calculated in background if it's enabled
+  private boolean criticalPathEnabled;
+  private ScheduleWorker scheduleWorker;
+  private final SlackTable slackTable = new SlackTable();
+  private boolean snapshotRendering;
+  private SnapshotWorker snapshotWorker;
+  private File snapshotFile;
+  private boolean snapshotRestored;
+  // the data requests wait till the restored snapshot has been drawn
+  private boolean dataRequestsDeferred;
+  private boolean dataRequestDeferred;
+  private final Runnable deferredDataRequest = new Runnable() {
+    @Override
+    public void run() {
+      if (frame != null) {
+        doDataRequest();
+      }
+    }
+  };
+  private ExecutorService snapshotFileExecutor;
+  // kept by the activity across the configuration changes
+  private RetainedModel retainedModel;
+  // the state to restore once the frame is laid out
+  private SavedState pendingState;
+  // the restored rows wait for the first data window
+  private SavedState pendingRowState;
   private ICallback callback;
+  // ids of the new tasks till the data provider gives them real ones, the ids of the frame stay unique
+  private long provisionalId = -1;
+
+  private IDataProvider dataProvider;
+  private ExecutorService dataExecutor;
+  private WindowRequest pendingRequest;
+  // time window the tasks have been loaded for
+  private long loadedFrom, loadedTo;
 
   public interface ICallback {
     void onInitComplete(GanttChartView ganttChartView);
@@ -50,389 +139,1911 @@ public class GanttChartView extends View {
     void onSelect(ITask selected);
   }
 
+  /**
+   * Loads the tasks of a time window around the frame instead of {@link ICallback#onDataRequest(GanttChartView)}.
+   */
+  public interface IDataProvider {
+    /**
+     * Called on a worker thread. The tasks of the window must be added to the request,
+     * a cancelled request could be abandoned since its tasks will be ignored.
+     */
+    void onWindowRequest(WindowRequest request);
+  }
+
+  private static class TaskData {
+    public final long id;
+    public final String name;
+    public final long start;
+    public final int duration;
+
+    public TaskData(long id, String name, long start, int duration) {
+      this.id = id;
+      this.name = name;
+      this.start = start;
+      this.duration = duration;
+    }
+  }
+
+  /**
+   * Supplies the rows on demand, so only the rows around the frame are kept as {@link ITask} objects.
+   * 
+   * @see GanttChartView#setTaskAdapter(ITaskAdapter)
+   */
+  public interface ITaskAdapter {
+    int getCount();
+    long getTaskId(int row);
+    String getTaskName(int row);
+    long getTaskStart(int row);
+    int getTaskDuration(int row);
+  }
+
+  public static class WindowRequest {
+    private final long from;
+    private final long to;
+    private volatile boolean cancelled;
+    private final List<TaskData> tasks = new ArrayList<TaskData>();
+    private final long requested = System.nanoTime();
+
+    private WindowRequest(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    public Date getStartDate() {
+      return new Date(from);
+    }
+
+    public Date getComplDate() {
+      return new Date(to);
+    }
+
+    public long getStartMillis() {
+      return from;
+    }
+
+    public long getComplMillis() {
+      return to;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    private void cancel() {
+      cancelled = true;
+    }
+
+    private boolean covers(long from, long to) {
+      return (this.from <= from && to <= this.to);
+    }
+
+    public void addTodoTask(long id, String name, Date startDate, int duration) {
+      tasks.add(new TaskData(id, name, startDate.getTime(), duration));
+    }
+  }
+
   private class FrameHeader {
-    public final int slotsNum;
-    public final int slotInMillis;
-    public final int slotW;
+    public final ZoomLevel level;
+    // slots in the frame, fewer than the level has if the slots are stretched by pinching
+    public int slotsNum;
+    public final long slotInMillis;
+    public int slotW;
+    // width of the slots in the tiles, the tiles are scaled to the slot width until the zoom settles
+    public int tileSlotW;
     public final int slotH;
-    private final String rulerGroupFormat;
-    private final String rulerFormat;
     private final String[] rulerGroupTexts;
     private final String[] rulerTexts;
+    // labels of the slots by their start, so scrolling and zooming back only formats unseen slots
+    private final RulerLabels rulerLabels;
+    // start of the tile grid of the level
+    private long tileOrigin = Long.MIN_VALUE;
+
+    public FrameHeader(final ZoomLevel level) {
+      this.level = level;
+      this.slotsNum = level.getSlotsNum();
+      this.slotInMillis = level.getSlotMillis();
+
+      this.slotW = level.getSlotWidth(size.right - size.left);
+      this.tileSlotW = slotW;
+      this.slotH = ROW_H;
 
-    public FrameHeader(int slotsNum, int slotInHours, String rulerGroupFormat, String rulerFormat) {
-      this.slotsNum = slotsNum;
-      this.slotInMillis = HOUR_IN_MILLIS * slotInHours;
+      // the frame scrolled by a part of slot shows one more slot
+      rulerGroupTexts = new String[slotsNum+1];
+      rulerTexts = new String[slotsNum+1];
+      rulerLabels = new RulerLabels(level, Math.max(RULER_CACHE_SIZE, 2*rulerTexts.length));
+    }
 
-      this.slotW = (size.right - size.left)/slotsNum;
-      this.slotH = ROW_H;
+    public long changeToSlots(long millis, int toSlots) {
+      return level.addSlots(millis, toSlots);
+    }
 
-      this.rulerGroupFormat = rulerGroupFormat;
-      this.rulerFormat = rulerFormat;
-      rulerGroupTexts = new String[slotsNum];
-      rulerTexts = new String[slotsNum];
+    /**
+     * Stretches the slots, the frame shows the slots fitting it, but not more than the level does.
+     */
+    public void setSlotWidth(int slotW) {
+      final int width = size.right - size.left;
+      this.slotW = slotW;
+      this.slotsNum = Math.min(level.getSlotsNum(), (width + slotW - 1)/slotW);
     }
 
-    public void changeToSlots(Calendar date, int toSlots) {
-      date.add(Calendar.MILLISECOND, slotInMillis*toSlots);
+    public void resetSlotWidth() {
+      setSlotWidth(level.getSlotWidth(size.right - size.left));
     }
 
-    public void initRulerTexts(Calendar startPeriod) {
-      final Calendar c = (Calendar) startPeriod.clone();
-      String lastGroupText = String.format(rulerGroupFormat, c);
-      rulerGroupTexts[0] = lastGroupText;
-      for (int i = 0; i < slotsNum; i++) {
-        if (i > 0) {
-          final String groupText = String.format(rulerGroupFormat, c);
-          if (lastGroupText.equals(groupText)) {
-            rulerGroupTexts[i] = "";
-          } else {
-            lastGroupText = groupText;
-            rulerGroupTexts[i] = lastGroupText;
-          }
+    public void initRulerTexts(long startPeriod) {
+      final long begin = renderMetrics.begin();
+      long c = startPeriod;
+      String lastGroupText = null;
+      for (int i = 0; i < rulerTexts.length; i++) {
+        final int label = rulerLabels.get(c);
+        final String groupText = rulerLabels.getGroupText(label);
+        if (groupText.equals(lastGroupText)) {
+          rulerGroupTexts[i] = "";
+        } else {
+          lastGroupText = groupText;
+          rulerGroupTexts[i] = lastGroupText;
         }
-        rulerTexts[i] = String.format(rulerFormat, c);
+        rulerTexts[i] = rulerLabels.getText(label);
 
-        changeToSlots(c, 1);
+        c = changeToSlots(c, 1);
       }
+      renderMetrics.end(RenderMetrics.Section.RELABEL, begin);
     }
 
     public void drawRuler(Canvas canvas) {
-      final Paint paint = new Paint();
-      paint.setColor(Color.GRAY);
-      paint.setStrokeWidth(2);
-      paint.setTextSize(16);
-
-      canvas.drawLine(size.left, 0, size.right, 0, paint);
-      canvas.drawLine(size.left, RULER_H-2, size.right, RULER_H-2, paint);
+      canvas.drawLine(size.left, 0, size.right, 0, rulerPaint);
+      canvas.drawLine(size.left, RULER_H-2, size.right, RULER_H-2, rulerPaint);
 
-      for (int x = 0, i = 0; i < slotsNum; x += slotW, i++) {
-        canvas.drawLine(x, RULER_H-14, x, RULER_H-2, paint);
-        canvas.drawText(rulerGroupTexts[i], x+2, RULER_H-48, paint);
-        canvas.drawText(rulerTexts[i], x+2, RULER_H-14, paint);
+      for (int x = -frame.scrollX, i = 0; i < frame.getVisibleSlots(); x += slotW, i++) {
+        canvas.drawLine(x, RULER_H-14, x, RULER_H-2, rulerPaint);
+        canvas.drawText(rulerGroupTexts[i], x+2, RULER_H-48, rulerPaint);
+        canvas.drawText(rulerTexts[i], x+2, RULER_H-14, rulerPaint);
       }
     }
 
   }
 
-  private class TimeFrame implements ListIterator<FrameHeader> {
-    private final List<FrameHeader> slots = new ArrayList<FrameHeader>();
-    private ListIterator<FrameHeader> slotsIterator;
-
+  private static class TileKey {
     private FrameHeader header;
-
-    protected final Calendar startPeriod;
-    private List<ITask> taskList;
+    private long tileStart;
     private int topTask;
-    private ITask selectedTask;
-    private int editedTask;
-
-    public TimeFrame() {
-      startPeriod = Calendar.getInstance();
-      startPeriod.clear();
-
-      taskList = new ArrayList<ITask>();
-      topTask = 0;
-      selectedTask = null;
-      editedTask = -1;
-
-      addTimeSlot(5, 24, "%tB, %<tY", "%td %<tb");
-      addTimeSlot(6, 4,  "%td %<tb", "%tI%<tp");
-      addTimeSlot(8, 1,  "%td %<tb", "%tI%<tp");
-
-      initSlotSize();
-    }
 
-    private void addTimeSlot(int slotsNum, int slotInHours, String rulerGroupFormat, String rulerFormat) {
-      slots.add(new FrameHeader(slotsNum, slotInHours, rulerGroupFormat, rulerFormat));
+    public TileKey() {
     }
 
-    public FrameHeader getHeader() {
-      return header;
+    public TileKey(TileKey key) {
+      set(key.header, key.tileStart, key.topTask);
     }
 
-    public Date getStartDate() {
-      return startPeriod.getTime();
+    public void set(FrameHeader header, long tileStart, int topTask) {
+      this.header = header;
+      this.tileStart = tileStart;
+      this.topTask = topTask;
     }
 
-    public void setStartPeriod(Date startPeriod) {
-      if (startPeriod != null) {
-        this.startPeriod.setTime(startPeriod);
-        this.header.initRulerTexts(this.startPeriod);
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof TileKey) {
+        final TileKey key = (TileKey) o;
+        return (header == key.header && tileStart == key.tileStart && topTask == key.topTask);
       }
-    }
 
-    public Date getComplDate() {
-      final Calendar c = (Calendar) startPeriod.clone();
-      c.add(Calendar.MILLISECOND, header.slotInMillis*header.slotsNum);
-      return c.getTime();
+      return false;
     }
 
-    public void initSlotSize() {
-      slotsIterator = slots.listIterator(0);
-      next();
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(header)*31 + (int) (tileStart ^ (tileStart >>> 32)))*31 + topTask;
     }
+  }
 
-    public List<ITask> getVisibleTasks() {
-      return taskList.subList(topTask, Math.min(topTask+tasksNum, taskList.size()));
+  /**
+   * Keeps time slots and task bars of the body rendered in bitmap tiles of {@link #TILE_SLOTS} slots,
+   * so scrolling only renders the tiles coming into the frame. The edited task, task names and selection
+   * are drawn over the tiles, since they change without changing the tasks.
+   * <p>
+   * The bitmaps of the evicted tiles are rendered again for the new tiles of the same size. A tile evicted
+   * while the frame is being drawn could be drawn by the frame already, so it's reused or recycled only
+   * from the next frame on.
+   */
+  private class TileCache implements IntervalIndex.Visitor {
+    private final LruCache<TileKey, Bitmap> tiles;
+    // evicted since the current frame has started drawing
+    private final List<Bitmap> retired = new ArrayList<Bitmap>();
+    // evicted before, free for the new tiles
+    private final List<Bitmap> pool = new ArrayList<Bitmap>();
+    // lookups must not allocate
+    private final TileKey probe = new TileKey();
+    private final Canvas tileCanvas = new Canvas();
+    // the tile being rendered
+    private FrameHeader tileHeader;
+    private long tileStart;
+    private long tileCompl;
+
+    public TileCache() {
+      tiles = new LruCache<TileKey, Bitmap>(TILE_CACHE_SIZE) {
+        @Override
+        protected int sizeOf(TileKey key, Bitmap tile) {
+          return tile.getRowBytes()*tile.getHeight();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, TileKey key, Bitmap oldTile, Bitmap newTile) {
+          retired.add(oldTile);
+        }
+      };
     }
 
-    public void addTask(ITask task) {
-      taskList.add(task);
+    public void invalidate() {
+      tiles.evictAll();
     }
 
     /**
-     * Causes drawing the task in selected style.
-     * 
-     * @param task will be drawing as selected.
+     * Recycles all the bitmaps, e.g. once the view is detached.
      */
-    public void setSelectedTask(ITask task) {
-      if (isSelected() && task != null) {
-        selectedTask = task;
-        doSelected(task);
-      }
+    public void release() {
+      tiles.evictAll();
+      recycle(retired, 0);
+      recycle(pool, 0);
     }
 
-    /**
-     * Tracks the task as currently reviewed/allowed to edit. It's not the same as being selected,
-     * i.e. any task could be selected, but only this one could be edited and therefore affects linked views/activities.
-     * 
-     * @param taskId a task allowed to be edit.
-     */
-    public void setEditedTask(long taskId) {
-      for (final ITask task : taskList) {
-        if (task.getId() == taskId) {
-          setEditedTask(task);
-          break;
-        }
+    public void draw(Canvas canvas) {
+      final FrameHeader header = frame.header;
+      final ZoomLevel level = header.level;
+      final long start = frame.timeline.getStart();
+      long firstSlot = (header.tileOrigin == Long.MIN_VALUE ? 0 : level.getSlot(header.tileOrigin, start));
+      if (header.tileOrigin == Long.MIN_VALUE || level.addSlots(header.tileOrigin, firstSlot) != start) {
+        // the frame isn't aligned with the tile grid of the level anymore
+        header.tileOrigin = start;
+        firstSlot = 0;
       }
-    }
 
-    public void setEditedTask(ITask editedTask) {
-      if (this.editedTask >= 0) {
-        taskList.set(this.editedTask, new TodoTask(taskList.get(this.editedTask)));
+      final long firstTile = Timeline.floorDiv(firstSlot, TILE_SLOTS);
+      final int tileW = TILE_SLOTS*header.tileSlotW;
+      // including the row partially visible while scrolling
+      final int tileH = (tasksNum+1)*header.slotH;
+      if (tileW <= 0 || tileH <= 0) {
+        return;
+      }
+      reclaim(tileW, tileH);
+
+      canvas.save();
+      canvas.clipRect(size.left, RULER_H, size.right, size.bottom);
+      int x = size.left + (int) (firstTile*TILE_SLOTS - firstSlot)*header.slotW - frame.scrollX;
+      // the tiles are drawn scaled while pinching, so the zoom doesn't render them on each step
+      canvas.translate(x, RULER_H - frame.scrollY);
+      canvas.scale((float) header.slotW/header.tileSlotW, 1);
+      for (long tile = firstTile, i = 0; x < size.right; tile++, i++, x += TILE_SLOTS*header.slotW) {
+        final long tileStart = level.addSlots(header.tileOrigin, tile*TILE_SLOTS);
+        canvas.drawBitmap(getTile(header, tileStart, tileW, tileH), i*tileW, 0, null);
       }
+      canvas.restore();
+    }
 
-      for (int i = 0; i < taskList.size(); i++) {
-        if (taskList.get(i) == editedTask) {
-          taskList.set(i, new EditedTask(editedTask));
-          this.editedTask = i;
-          break;
+    private Bitmap getTile(FrameHeader header, long tileStart, int tileW, int tileH) {
+      probe.set(header, tileStart, frame.topTask);
+      Bitmap tile = tiles.get(probe);
+      if (tile == null) {
+        if (pool.isEmpty()) {
+          tile = Bitmap.createBitmap(tileW, tileH, Bitmap.Config.ARGB_8888);
+        } else {
+          tile = pool.remove(pool.size()-1);
+          tile.eraseColor(Color.TRANSPARENT);
         }
+        render(tile, header, tileStart);
+        tiles.put(new TileKey(probe), tile);
       }
-    }
 
-    public void changeStartPeriod(int toSlots) {
-      // set up a new start date for the frame
-      startPeriod.add(Calendar.MILLISECOND, header.slotInMillis*toSlots);
-      header.initRulerTexts(startPeriod);
+      return tile;
     }
 
-    public void changeTopTask(int toRows) {
-      topTask += toRows;
-      if (topTask+tasksNum > taskList.size()) {
-        topTask--;
+    /**
+     * Moves the tiles evicted by the previous frames to the pool, the ones of another size
+     * and the ones the pool has no room for are recycled.
+     */
+    private void reclaim(int tileW, int tileH) {
+      for (int i = 0; i < retired.size(); i++) {
+        pool.add(retired.get(i));
       }
-
-      if (topTask < 0) {
-        topTask = 0;
+      retired.clear();
+      for (int i = pool.size()-1; i >= 0; i--) {
+        final Bitmap tile = pool.get(i);
+        if (tile.getWidth() != tileW || tile.getHeight() != tileH) {
+          tile.recycle();
+          pool.remove(i);
+        }
       }
+      recycle(pool, TILE_POOL_SIZE);
     }
 
-    public int getStartSlot(Date start) {
-      final long delta = start.getTime() - startPeriod.getTimeInMillis();
-
-      return (int) (delta / header.slotInMillis);
+    /**
+     * Recycles the bitmaps of the list beyond the size.
+     */
+    private void recycle(List<Bitmap> bitmaps, int size) {
+      while (bitmaps.size() > size) {
+        bitmaps.remove(bitmaps.size()-1).recycle();
+      }
     }
 
-    public int getComplSlot(Date start, int durationInHours) {
-      final int durationInMillis = (int) (durationInHours*HOUR_IN_MILLIS);
-      final int slots = (int) (durationInMillis / header.slotInMillis);
+    private void render(Bitmap tile, FrameHeader header, long tileStart) {
+      tileCanvas.setBitmap(tile);
 
-      if (slots*header.slotInMillis == durationInMillis) {
-        return getStartSlot(start) + slots-1; // since this slot is already included in the start slot
+      // the grid of the slots is a layer of its own
+      paint.setColor(Color.WHITE);
+      tileHeader = header;
+      this.tileStart = tileStart;
+      this.tileCompl = header.level.addSlots(tileStart, TILE_SLOTS);
+      if (frame.layout.isLanePacking()) {
+        // rows of the tasks are their lanes
+        frame.layout.query(tileStart, tileCompl, this);
       } else {
-        return getStartSlot(start) + slots;
-      }
-    }
-
-    public void zoomIn(int x) {
-      if (hasNext()) {
-        final ITask clickedTask = getTaskByX(x);
-        next();
-        // align start period of the frame
-        if (clickedTask != null) {
-          setStartPeriod(clickedTask.getStartDate());
+        final int last = Math.min(frame.topTask+tasksNum+1, frame.taskList.size());
+        for (int y = 0, i = frame.topTask; i < last; y += header.slotH, i++) {
+          renderBar(frame.taskList.get(i), y);
         }
       }
     }
 
-    public void zoomOut(int x) {
-      if (hasPrevious()) {
-        final ITask clickedTask = getTaskByX(x);
-        previous();
-        // align start period of the frame
-        if (clickedTask != null) {
-          setStartPeriod(clickedTask.getStartDate());
-        }
+    @Override
+    public boolean visit(int position) {
+      final int lane = frame.layout.getRow(position);
+      if (lane >= frame.topTask && lane <= frame.topTask+tasksNum) {
+        renderBar(frame.taskList.get(position), (lane - frame.topTask)*tileHeader.slotH);
       }
+      return true;
     }
 
-    public boolean handleDragEvent(int x, int y, Point delta) {
-      // 2nd term allows to make scrolling faster in corners of the frame
-      boolean horizontal = (Math.abs(delta.x) > header.slotW) ||
-          (Math.abs(delta.x) > 10 && (x < header.slotW || x > header.slotW*(header.slotsNum-1)));
-      if (horizontal) {
-        final ITask touchedTask = getTaskByTouch(x, y);
-        if (touchedTask != null) {
-          // handle the event on the task level
-          touchedTask.handleDragEvent(delta);
-          doSelected(touchedTask);
-        } else {
-          // handle the event on the frame level
-          changeStartPeriod((int) Math.signum(delta.x));
-        }
-      }
-
-      boolean vertical = (Math.abs(delta.y) > header.slotH);
-      if (vertical) {
-        if (delta.y > 0) {
-          changeTopTask(1);
-        } else if (delta.y < 0) {
-          changeTopTask(-1);
-        }
+    private void renderBar(ITask task, int y) {
+      final FrameHeader header = tileHeader;
+      // the last moment of the task, empty tasks still take their slot
+      final long taskEnd = Math.max(task.getStartMillis(), task.getComplMillis()-1);
+      if (isEdited(task) || task.getStartMillis() >= tileCompl || taskEnd < tileStart) {
+        return;
       }
 
-      return (horizontal || vertical);
+      final long startSlot = Math.max(-1, header.level.getSlot(tileStart, task.getStartMillis()));
+      final long complSlot = Math.min(TILE_SLOTS, header.level.getSlot(tileStart, taskEnd));
+      taskRect.set((int) startSlot*header.tileSlotW+1, y+1, (int) (complSlot+1)*header.tileSlotW-1, y+header.slotH-1);
+      tileCanvas.drawRect(taskRect, paint);
     }
+  }
 
-    public ITask getTaskByX(int x) {
-      final int slot = xToSlot(x);
-      // iterate tasks in the slot
-      for (final ITask task : getVisibleTasks()) {
-        if (slot >= task.getStartSlot() && slot <= task.getComplSlot()) {
-          return task;
-        }
+  /**
+   * The ruler and the grid of the slots of the layered rendering, they are drawn into bitmaps
+   * and drawn again only when the time axis changes, so scrolling the rows, editing and selecting
+   * only copy them.
+   */
+  private class AxisLayers {
+    private final Canvas layerCanvas = new Canvas();
+    private Bitmap ruler;
+    private Bitmap grid;
+    // the time axis the ruler has been drawn for
+    private FrameHeader rulerHeader;
+    private long rulerStart;
+    private int rulerSlotW, rulerScrollX, rulerSlots;
+    // the grid doesn't depend on the start, the slots are alike
+    private int gridSlotW, gridScrollX, gridSlots;
+
+    public void drawRuler(Canvas canvas) {
+      final int width = size.width();
+      if (width <= 0) {
+        return;
+      }
+      if (ruler == null || ruler.getWidth() != width) {
+        recycle(ruler);
+        ruler = Bitmap.createBitmap(width, RULER_H, Bitmap.Config.ARGB_8888);
+        rulerHeader = null;
       }
 
-      return null;
+      final FrameHeader header = frame.header;
+      final long start = frame.timeline.getStart();
+      final int slots = frame.getVisibleSlots();
+      if (rulerHeader != header || rulerStart != start || rulerSlotW != header.slotW
+          || rulerScrollX != frame.scrollX || rulerSlots != slots) {
+        rulerHeader = header;
+        rulerStart = start;
+        rulerSlotW = header.slotW;
+        rulerScrollX = frame.scrollX;
+        rulerSlots = slots;
+
+        ruler.eraseColor(Color.TRANSPARENT);
+        layerCanvas.setBitmap(ruler);
+        layerCanvas.save();
+        layerCanvas.translate(-size.left, 0);
+        header.drawRuler(layerCanvas);
+        layerCanvas.restore();
+      }
+      canvas.drawBitmap(ruler, size.left, 0, null);
     }
 
-    public ITask getTaskByTouch(int x, int y) {
-      final int slot = xToSlot(x);
-      final int row = yToRow(y);
-      // find the task in the slot
-      if (row >= 0 && row < getVisibleTasks().size()) {
-        final ITask task = getVisibleTasks().get(row);
-        if (slot >= task.getStartSlot() && slot <= task.getComplSlot()) {
-          return task;
-        }
+    public void drawGrid(Canvas canvas) {
+      final int width = size.width();
+      final int height = size.height() - RULER_H;
+      if (width <= 0 || height <= 0) {
+        return;
+      }
+      if (grid == null || grid.getWidth() != width || grid.getHeight() != height) {
+        recycle(grid);
+        grid = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        gridSlotW = 0;
       }
 
-      return null;
+      final int slots = frame.getVisibleSlots();
+      if (gridSlotW != frame.header.slotW || gridScrollX != frame.scrollX || gridSlots != slots) {
+        gridSlotW = frame.header.slotW;
+        gridScrollX = frame.scrollX;
+        gridSlots = slots;
+
+        grid.eraseColor(Color.TRANSPARENT);
+        layerCanvas.setBitmap(grid);
+        layerCanvas.save();
+        layerCanvas.translate(-size.left, -RULER_H);
+        frame.drawGrid(layerCanvas);
+        layerCanvas.restore();
+      }
+      canvas.drawBitmap(grid, size.left, RULER_H, null);
     }
 
-    public void setSelectedTaskByTouch(int x, int y) {
-      setSelectedTask(getTaskByTouch(x, y));
+    public void release() {
+      recycle(ruler);
+      recycle(grid);
+      ruler = null;
+      grid = null;
     }
 
-    @Override
-    public boolean hasNext() {
-      return slotsIterator.hasNext();
+    private void recycle(Bitmap bitmap) {
+      if (bitmap != null) {
+        bitmap.recycle();
+      }
     }
+  }
 
-    @Override
-    public FrameHeader next() {
-      final FrameHeader slot = slotsIterator.next();
-      setSlotSizeInMillis(slot);
+  /**
+   * Read-only list of the adapter rows which keeps tasks of the last requested rows only.
+   * The tasks are cached directly by row, so rows of the frame plus overscan never evict each other.
+   * The edited and selected tasks are pinned to survive scrolling them away.
+   */
+  private class AdapterTaskList extends AbstractList<ITask> {
+    private static final int EDITED = 0;
+    private static final int SELECTED = 1;
+
+    private final ITaskAdapter adapter;
+    private int[] rows;
+    private ITask[] tasks;
+    private final int[] pinnedRows = {-1, -1};
+    private final ITask[] pinnedTasks = new ITask[2];
+
+    public AdapterTaskList(ITaskAdapter adapter) {
+      this.adapter = adapter;
+      allocate();
+    }
 
-      return slot;
+    private void allocate() {
+      final int capacity = tasksNum+1 + 2*ROWS_OVERSCAN;
+      rows = new int[capacity];
+      tasks = new ITask[capacity];
+      Arrays.fill(rows, -1);
     }
 
-    @Override
-    public boolean hasPrevious() {
-      return slotsIterator.hasPrevious();
+    /**
+     * Drops all the tasks, e.g. the adapter data has been changed or the view has been resized.
+     */
+    public void reset() {
+      allocate();
+      pinnedRows[EDITED] = pinnedRows[SELECTED] = -1;
+      pinnedTasks[EDITED] = pinnedTasks[SELECTED] = null;
     }
 
     @Override
-    public int nextIndex() {
-      return slotsIterator.nextIndex();
+    public int size() {
+      return adapter.getCount();
     }
 
     @Override
-    public FrameHeader previous() {
-      final FrameHeader slot = slotsIterator.previous();
-      setSlotSizeInMillis(slot);
+    public ITask get(int row) {
+      for (int i = 0; i < pinnedRows.length; i++) {
+        if (pinnedRows[i] == row) {
+          return pinnedTasks[i];
+        }
+      }
 
-      return slot;
+      final int i = row % rows.length;
+      if (rows[i] != row) {
+        rows[i] = row;
+        tasks[i] = new TodoTask(adapter.getTaskId(row), adapter.getTaskName(row), adapter.getTaskStart(row), adapter.getTaskDuration(row));
+      }
+
+      return tasks[i];
     }
 
-    @Override
-    public int previousIndex() {
-      return slotsIterator.previousIndex();
+    public void select(ITask task) {
+      final int row = indexOfCached(task);
+      pin(SELECTED, row, (row >= 0 ? task : null));
     }
 
-    @Override
-    public void remove() {
-      // intentionally clear      
+    /**
+     * Keeps the edited task, so its state isn't lost when its row is dropped from the cache.
+     */
+    public void edit(ITask task) {
+      final int row = (task != null ? indexOfCached(task) : -1);
+      pin(EDITED, row, (row >= 0 ? task : null));
     }
 
-    @Override
-    public void add(FrameHeader slot) {
-      // intentionally clear      
+    private void pin(int kind, int row, ITask task) {
+      pinnedRows[kind] = row;
+      pinnedTasks[kind] = task;
     }
 
-    @Override
-    public void set(FrameHeader slot) {
-      // intentionally clear      
+    /**
+     * Doesn't fetch anything from the adapter.
+     * 
+     * @return row of the task if it's still kept, -1 otherwise.
+     */
+    public int indexOfCached(ITask task) {
+      for (int i = 0; i < pinnedRows.length; i++) {
+        if (pinnedTasks[i] == task) {
+          return pinnedRows[i];
+        }
+      }
+      for (int i = 0; i < rows.length; i++) {
+        if (tasks[i] == task) {
+          return rows[i];
+        }
+      }
+
+      return -1;
     }
+  }
 
-    private void setSlotSizeInMillis(FrameHeader header) {
-      this.header = header;
+  private class TimeFrame implements ListIterator<FrameHeader> {
+    private ZoomLadder ladder;
+    // headers of the ladder levels
+    private final List<FrameHeader> slots = new ArrayList<FrameHeader>();
+
+    private FrameHeader header;
 
-      if (getSlotSizeInHours() >= 24) {
-        // align start period to day limit
-        startPeriod.set(Calendar.HOUR_OF_DAY, 0);
-        startPeriod.set(Calendar.MINUTE, 0);
+    protected final Timeline timeline = new Timeline();
+    private List<ITask> taskList;
+    // set if the rows come from an adapter, then there are neither indices nor task ids
+    private AdapterTaskList adapterTaskList;
+    // positions in the layout are the same as in the task list
+    private final TaskLayout layout = new TaskLayout();
+    private final LaneDrawer laneDrawer = new LaneDrawer();
+    private final LinkDrawer linkDrawer = new LinkDrawer();
+    private final HitGrid hitGrid = new HitGrid();
+    // changes of the tasks the layout doesn't know about, i.e. of the adapter rows
+    private int taskChanges;
+    private final SpanUpdater spanUpdater = new SpanUpdater();
+    // the dependencies outlive the frame, but their spans are set by the tasks of the frame
+    private boolean spansDirty = true;
+    // tasks by visible slot, the details aren't drawn if there are too many of them
+    private int[] density = new int[0];
+    private int maxDensity;
+    private int detailThreshold = DEFAULT_DETAIL_THRESHOLD;
+    private final TileCache tiles = new TileCache();
+    private int topTask;
+    // pixel offsets of the frame inside the start slot and the top row
+    private int scrollX;
+    private int scrollY;
+    private ITask selectedTask;
+    private int editedTask;
+    // nesting level of the current batch of changes
+    private int batchDepth;
+    // positions of the tasks removed by the batch
+    private final BitSet removals = new BitSet();
+    // positions of the tasks met by the current refresh, the rest of them are removed by its end
+    private final BitSet seen = new BitSet();
+    private boolean refreshing;
+    // positions of the tasks selected together, besides the selected task
+    private final BitSet selection = new BitSet();
+    // changes of the selection and moves of the selected tasks
+    private int selectionChanges;
+    private final IntervalIndex.Visitor rangeSelector = new IntervalIndex.Visitor() {
+      @Override
+      public boolean visit(int position) {
+        final int row = getRowOf(position);
+        if (row >= rangeFromRow && row <= rangeToRow && !removals.get(position)) {
+          selection.set(position);
+        }
+        return true;
+      }
+    };
+    private int rangeFromRow, rangeToRow;
+    private final IntervalIndex.Visitor unseenRemover = new IntervalIndex.Visitor() {
+      @Override
+      public boolean visit(int position) {
+        if (!seen.get(position)) {
+          markRemoved(position);
+        }
+        return true;
+      }
+    };
+
+    private long retainFrom, retainTo;
+    private final IntervalIndex.Visitor outsideRemover = new IntervalIndex.Visitor() {
+      @Override
+      public boolean visit(int position) {
+        if ((layout.getEnd(position) <= retainFrom || layout.getStart(position) >= retainTo)
+            && position != editedTask && !selection.get(position) && taskList.get(position) != selectedTask) {
+          markRemoved(position);
+        }
+        return true;
       }
+    };
 
-      this.header.initRulerTexts(startPeriod);
-    }
+    public TimeFrame() {
+      final Calendar calendar = Calendar.getInstance();
+      calendar.clear();
+      timeline.setStart(calendar.getTimeInMillis());
 
-    private int getSlotSizeInHours() {
-      return (header.slotInMillis / HOUR_IN_MILLIS);
-    }
+      taskList = new ArrayList<ITask>();
+      topTask = 0;
+      selectedTask = null;
+      editedTask = -1;
 
-    public void drawTimeSlots(Canvas canvas) {
-      paint.setColor(Color.DKGRAY);
+      setZoomLadder(zoomLadder);
+    }
 
-      for (int x = header.slotW, i = 0; i < header.slotsNum; x += header.slotW, i++) {
-        canvas.drawLine(x, RULER_H, x, size.bottom, paint);
+    public void setZoomLadder(ZoomLadder ladder) {
+      this.ladder = ladder;
+      slots.clear();
+      for (int i = 0; i < ladder.size(); i++) {
+        slots.add(new FrameHeader(ladder.get(i)));
       }
+      tiles.invalidate();
+
+      initSlotSize();
     }
 
-    public void drawTasks(Canvas canvas) {
-      paint.setColor(Color.WHITE);
+    public FrameHeader getHeader() {
+      return header;
+    }
 
-      int y = RULER_H;
-      final Paint textPaint = new Paint();
-      textPaint.setColor(Color.GRAY);
-      textPaint.setStrokeWidth(2);
-      textPaint.setTextSize(20);
-      for (final ITask task : getVisibleTasks()) {
-        task.draw(y, canvas, textPaint);
-// TODO extract to ITask
-        y += header.slotH;
-      }
+    public Date getStartDate() {
+      return new Date(timeline.getStart());
     }
-  }
 
-  public interface ITask {
+    public void setStartPeriod(Date startPeriod) {
+      if (startPeriod != null) {
+        setStartPeriod(startPeriod.getTime());
+      }
+    }
+
+    public void setStartPeriod(long startPeriod) {
+      timeline.setStart(startPeriod);
+      scrollX = 0;
+      header.initRulerTexts(startPeriod);
+      requestDataWindow();
+    }
+
+    public Date getComplDate() {
+      return new Date(timeline.getCompl());
+    }
+
+    public void initSlotSize() {
+      setZoomLevel(ladder.getInitialIndex());
+    }
+
+    /**
+     * @param level index of the level in the ladder.
+     */
+    public void setZoomLevel(int level) {
+      ladder.setCurrentIndex(level);
+      setSlotSizeInMillis(slots.get(ladder.getCurrentIndex()));
+    }
+
+    public List<ITask> getVisibleTasks() {
+      return taskList.subList(topTask, Math.min(topTask+getVisibleRows(), taskList.size()));
+    }
+
+    /**
+     * @return number of the rows in the frame including the partially visible one.
+     */
+    public int getVisibleRows() {
+      return tasksNum + (scrollY > 0 ? 1 : 0);
+    }
+
+    /**
+     * @return number of the slots in the frame including the partially visible one.
+     */
+    public int getVisibleSlots() {
+      return header.slotsNum + (scrollX > 0 ? 1 : 0);
+    }
+
+    public void setTaskAdapter(ITaskAdapter adapter) {
+      clearTasks();
+      if (adapter != null) {
+        // adapter rows are rows
+        layout.setLanePacking(false);
+        adapterTaskList = new AdapterTaskList(adapter);
+        taskList = adapterTaskList;
+      } else {
+        adapterTaskList = null;
+        taskList = new ArrayList<ITask>();
+      }
+      topTask = 0;
+      scrollY = 0;
+      selectedTask = null;
+    }
+
+    public boolean isVirtual() {
+      return (adapterTaskList != null);
+    }
+
+    /**
+     * Puts non-overlapping tasks into shared rows, so dense schedules need far less rows.
+     */
+    public void setLanePacking(boolean lanePacking) {
+      if (lanePacking && isVirtual()) {
+        throw new IllegalStateException("The adapter rows can't be packed.");
+      }
+
+      layout.setLanePacking(lanePacking);
+      topTask = 0;
+      scrollY = 0;
+      tiles.invalidate();
+      if (snapshotWorker != null) {
+        snapshotWorker.setLanePacking(lanePacking);
+      }
+    }
+
+    public int getRowCount() {
+      return (isVirtual() ? taskList.size() : layout.getRowCount());
+    }
+
+    /**
+     * @param position of the task in the task list.
+     */
+    public int getRowOf(int position) {
+      return (isVirtual() ? position : layout.getRow(position));
+    }
+
+    public void addTask(ITask task) {
+      if (isVirtual()) {
+        throw new IllegalStateException("The tasks come from the adapter.");
+      }
+
+      taskList.add(task);
+      layout.add(task.getId(), task.getStartMillis(), task.getComplMillis());
+      if (isEdited(task)) {
+        // the only edited task
+        if (editedTask >= 0) {
+          ((TodoTask) taskList.get(editedTask)).setEdited(false);
+        }
+        editedTask = taskList.size()-1;
+      }
+      updateDependencySpans(task.getId());
+      scheduleTask(task);
+      snapshotTask(taskList.size()-1, task);
+      if (batchDepth == 0) {
+        tiles.invalidate();
+      }
+    }
+
+    /**
+     * Changes dates of the task in place.
+     * 
+     * @return false if there is no such task.
+     */
+    public boolean updateTask(long taskId, long start, int duration) {
+      if (isVirtual()) {
+        throw new IllegalStateException("The tasks come from the adapter.");
+      }
+
+      final int i = layout.indexOf(taskId);
+      if (i < 0 || removals.get(i)) {
+        return false;
+      }
+
+      final TodoTask task = (TodoTask) taskList.get(i);
+      task.setDates(start, duration);
+      updateTask(task);
+
+      return true;
+    }
+
+    /**
+     * Removes the task, in a batch all the removed tasks are dropped at once by the end of the batch,
+     * otherwise the task is removed from the index in place.
+     * 
+     * @return false if there is no such task.
+     */
+    public boolean removeTask(long taskId) {
+      if (isVirtual()) {
+        throw new IllegalStateException("The tasks come from the adapter.");
+      }
+
+      final int i = layout.indexOf(taskId);
+      if (i < 0 || removals.get(i)) {
+        return false;
+      }
+
+      if (batchDepth > 0) {
+        markRemoved(i);
+      } else {
+        removeAt(i);
+      }
+
+      return true;
+    }
+
+    /**
+     * Removes the task at the position out of a batch, the tasks behind it move one position down
+     * and keep their lanes.
+     */
+    private void removeAt(int position) {
+      final ITask task = taskList.remove(position);
+      layout.remove(position, task.getId());
+      if (task == selectedTask) {
+        selectedTask = null;
+      }
+      if (editedTask == position) {
+        editedTask = -1;
+      } else if (editedTask > position) {
+        editedTask--;
+      }
+      // the selected positions behind the task move down too
+      if (selection.nextSetBit(position) >= 0) {
+        selection.clear(position);
+        for (int i = selection.nextSetBit(position+1); i >= 0; i = selection.nextSetBit(i+1)) {
+          selection.clear(i);
+          selection.set(i-1);
+        }
+        selectionChanges++;
+      }
+      if (scheduleWorker != null) {
+        scheduleWorker.removeTask(task.getId());
+      }
+      if (snapshotWorker != null) {
+        snapshotWorker.removeTask(position);
+      }
+      spansDirty = true;
+
+      if (topTask+tasksNum > getRowCount()) {
+        topTask = Math.max(0, getRowCount()-tasksNum);
+        scrollY = 0;
+      }
+      tiles.invalidate();
+    }
+
+    private void markRemoved(int position) {
+      if (!removals.get(position)) {
+        removals.set(position);
+        if (scheduleWorker != null) {
+          scheduleWorker.removeTask(taskList.get(position).getId());
+        }
+      }
+    }
+
+    /**
+     * Starts a refresh, i.e. a batch which puts the current tasks by {@link #putTask(long, String, long, int)},
+     * and the tasks which haven't been put are removed by its end.
+     */
+    public void beginRefresh() {
+      if (isVirtual()) {
+        throw new IllegalStateException("The tasks come from the adapter.");
+      }
+
+      beginUpdate();
+      refreshing = true;
+      seen.clear();
+    }
+
+    public boolean isRefreshing() {
+      return refreshing;
+    }
+
+    /**
+     * Adds the task, or updates the task having the same id in place.
+     * 
+     * @return the added or the updated task.
+     */
+    public TodoTask putTask(long id, String name, long start, int duration) {
+      final int i = layout.indexOf(id);
+      if (i < 0 || removals.get(i)) {
+        final TodoTask task = new TodoTask(id, name, start, duration);
+        addTask(task);
+        seen.set(taskList.size()-1);
+        return task;
+      }
+
+      final TodoTask task = (TodoTask) taskList.get(i);
+      if (!task.getName().equals(name)) {
+        task.setName(name);
+      }
+      if (task.getStartMillis() != start || task.getDuration() != duration) {
+        task.setDates(start, duration);
+        updateTask(task);
+      }
+      seen.set(i);
+
+      return task;
+    }
+
+    /**
+     * Removes all the tasks which haven't been put since {@link #beginRefresh()}.
+     */
+    public void endRefresh() {
+      for (int i = seen.nextClearBit(0); i < taskList.size(); i = seen.nextClearBit(i+1)) {
+        markRemoved(i);
+      }
+      finishRefresh();
+    }
+
+    /**
+     * Removes the tasks of the window which haven't been put since {@link #beginRefresh()},
+     * the tasks beyond the window are kept.
+     */
+    public void endRefresh(long from, long to) {
+      layout.query(from, to, unseenRemover);
+      finishRefresh();
+    }
+
+    /**
+     * Removes the tasks beyond the window in a batch, the edited and the selected tasks are kept.
+     */
+    public void retainTasks(long from, long to) {
+      if (isVirtual()) {
+        throw new IllegalStateException("The tasks come from the adapter.");
+      }
+
+      retainFrom = from;
+      retainTo = to;
+      beginUpdate();
+      layout.query(Long.MIN_VALUE, from, outsideRemover);
+      layout.query(to, Long.MAX_VALUE, outsideRemover);
+      commitUpdate();
+    }
+
+    private void finishRefresh() {
+      refreshing = false;
+      seen.clear();
+      commitUpdate();
+    }
+
+    /**
+     * Starts a batch of changes, batches could be nested.
+     */
+    public void beginUpdate() {
+      if (batchDepth++ == 0) {
+        layout.beginBatch();
+        if (snapshotWorker != null) {
+          snapshotWorker.beginBatch();
+        }
+      }
+    }
+
+    public boolean isUpdating() {
+      return (batchDepth > 0);
+    }
+
+    /**
+     * Applies the changes of the batch, the removed tasks are dropped and the rows are laid out once.
+     * 
+     * @return true if the outer batch has been committed.
+     */
+    public boolean commitUpdate() {
+      if (batchDepth == 0) {
+        throw new IllegalStateException("There is no batch to commit.");
+      }
+      if (--batchDepth > 0) {
+        return false;
+      }
+
+      if (!removals.isEmpty()) {
+        compactTasks();
+      }
+      layout.commitBatch();
+      if (snapshotWorker != null) {
+        snapshotWorker.commitBatch();
+      }
+      if (topTask+tasksNum > getRowCount()) {
+        topTask = Math.max(0, getRowCount()-tasksNum);
+        scrollY = 0;
+      }
+      tiles.invalidate();
+
+      return true;
+    }
+
+    /**
+     * Drops the removed tasks in one pass and lays out the rest of them again.
+     */
+    private void compactTasks() {
+      int j = 0;
+      int edited = -1;
+      for (int i = 0; i < taskList.size(); i++) {
+        final ITask task = taskList.get(i);
+        // the selected positions move along with the tasks, j is never ahead of i
+        final boolean selected = selection.get(i);
+        selection.clear(i);
+        if (removals.get(i)) {
+          if (task == selectedTask) {
+            selectedTask = null;
+          }
+          continue;
+        }
+
+        if (i == editedTask) {
+          edited = j;
+        }
+        if (selected) {
+          selection.set(j);
+        }
+        taskList.set(j++, task);
+      }
+      selectionChanges++;
+      taskList.subList(j, taskList.size()).clear();
+      editedTask = edited;
+      removals.clear();
+
+      layout.clear();
+      for (int i = 0; i < taskList.size(); i++) {
+        final ITask task = taskList.get(i);
+        layout.add(task.getId(), task.getStartMillis(), task.getComplMillis());
+      }
+      spansDirty = true;
+      snapshotTasks();
+    }
+
+    /**
+     * Gives all the tasks to the snapshot worker, their positions there are the same as here.
+     */
+    public void snapshotTasks() {
+      if (snapshotWorker == null || isVirtual()) {
+        return;
+      }
+
+      final int size = layout.size();
+      final long[] ids = new long[size];
+      final long[] starts = new long[size];
+      final long[] ends = new long[size];
+      for (int i = 0; i < size; i++) {
+        ids[i] = taskList.get(i).getId();
+        starts[i] = layout.getStart(i);
+        ends[i] = layout.getEnd(i);
+      }
+      snapshotWorker.setTasks(ids, starts, ends, size);
+    }
+
+    public void clearTasks() {
+      if (isVirtual()) {
+        adapterTaskList.reset();
+      } else {
+        taskList.clear();
+      }
+      layout.clear();
+      removals.clear();
+      seen.clear();
+      selection.clear();
+      selectionChanges++;
+      spansDirty = true;
+      if (scheduleWorker != null) {
+        scheduleWorker.clearTasks();
+      }
+      if (snapshotWorker != null) {
+        snapshotWorker.clearTasks();
+      }
+      editedTask = -1;
+      tiles.invalidate();
+    }
+
+    /**
+     * Must be called when start or duration of the task has been changed.
+     */
+    public void updateTask(ITask task) {
+      final int i = indexOf(task);
+      if (i >= 0) {
+        taskChanges++;
+        if (!isVirtual()) {
+          layout.set(i, task.getStartMillis(), task.getComplMillis());
+          updateDependencySpans(task.getId());
+          scheduleTask(task);
+          snapshotTask(i, task);
+        }
+        if (!isEdited(task) && batchDepth == 0) {
+          tiles.invalidate();
+        }
+      }
+    }
+
+    /**
+     * Sets time spans of the task's dependencies by the current dates of the tasks.
+     */
+    private void updateDependencySpans(long taskId) {
+      if (spansDirty) {
+        // all of them are set before drawing
+        return;
+      }
+
+      for (int edge = dependencies.firstOut(taskId); edge != DependencyGraph.NONE; edge = dependencies.nextOut(edge)) {
+        updateDependencySpan(edge);
+      }
+      for (int edge = dependencies.firstIn(taskId); edge != DependencyGraph.NONE; edge = dependencies.nextIn(edge)) {
+        updateDependencySpan(edge);
+      }
+    }
+
+    public void updateDependencySpan(int edge) {
+      final int from = layout.indexOf(dependencies.getPredecessor(edge));
+      final int to = layout.indexOf(dependencies.getSuccessor(edge));
+      if (from >= 0 && to >= 0) {
+        dependencies.setSpan(edge, layout.getEnd(from), layout.getStart(to));
+      } else {
+        // the link to an unknown task isn't drawn
+        dependencies.clearSpan(edge);
+      }
+    }
+
+    private class SpanUpdater implements IntervalIndex.Visitor {
+      @Override
+      public boolean visit(int edge) {
+        updateDependencySpan(edge);
+        return true;
+      }
+    }
+
+    /**
+     * Passes all the tasks to a new schedule.
+     */
+    public void scheduleTasks() {
+      if (!isVirtual()) {
+        for (int i = 0; i < taskList.size(); i++) {
+          scheduleTask(taskList.get(i));
+        }
+      }
+    }
+
+    public int indexOf(ITask task) {
+      if (isVirtual()) {
+        return adapterTaskList.indexOfCached(task);
+      }
+
+      // the ids are unique, the new tasks have provisional ones
+      final int i = layout.indexOf(task.getId());
+      return (i >= 0 && taskList.get(i) == task ? i : -1);
+    }
+
+    /**
+     * Visits the tasks intersecting the slots range in the order of their start dates.
+     * 
+     * @param fromSlot the first slot of the range.
+     * @param toSlot the last slot of the range, inclusive.
+     * @param visitor receives positions of the tasks in the task list.
+     */
+    public void findTasks(int fromSlot, int toSlot, IntervalIndex.Visitor visitor) {
+      layout.query(timeline.getSlotStart(fromSlot), timeline.getSlotStart(toSlot+1), visitor);
+    }
+
+    /**
+     * Causes drawing the task in selected style.
+     * 
+     * @param task will be drawing as selected.
+     */
+    public void setSelectedTask(ITask task) {
+      if (isSelected() && task != null) {
+        selectedTask = task;
+        if (isVirtual()) {
+          adapterTaskList.select(task);
+        }
+        doSelected(task);
+      }
+    }
+
+    /**
+     * Tracks the task as currently reviewed/allowed to edit. It's not the same as being selected,
+     * i.e. any task could be selected, but only this one could be edited and therefore affects linked views/activities.
+     * 
+     * @param taskId a task allowed to be edit.
+     */
+    public void setEditedTask(long taskId) {
+      if (isVirtual()) {
+        // only the rows around the frame are known
+        final int last = Math.min(topTask+getVisibleRows(), taskList.size());
+        for (int i = topTask; i < last; i++) {
+          if (taskList.get(i).getId() == taskId) {
+            setEditedTask(taskList.get(i));
+            break;
+          }
+        }
+        return;
+      }
+
+      final int i = layout.indexOf(taskId);
+      if (i >= 0) {
+        setEditedTask(taskList.get(i));
+      }
+    }
+
+    public void setEditedTask(ITask editedTask) {
+      if (this.editedTask >= 0) {
+        ((TodoTask) taskList.get(this.editedTask)).setEdited(false);
+        this.editedTask = -1;
+      }
+
+      // the task is edited in place, it's found by its id
+      final int i = indexOf(editedTask);
+      if (i >= 0) {
+        ((TodoTask) editedTask).setEdited(true);
+        this.editedTask = i;
+      }
+      if (isVirtual()) {
+        adapterTaskList.edit(i >= 0 ? editedTask : null);
+      }
+      if (batchDepth == 0) {
+        tiles.invalidate();
+      }
+    }
+
+    public void changeStartPeriod(int toSlots) {
+      // set up a new start date for the frame
+      timeline.shift(toSlots);
+      header.initRulerTexts(timeline.getStart());
+      requestDataWindow();
+    }
+
+    public void setTopTask(int row) {
+      topTask = Math.max(0, Math.min(row, getRowCount()-tasksNum));
+      scrollY = 0;
+    }
+
+    /**
+     * Fits the pixel geometry to the new size of the view, the tasks, the zoom level and the position are kept.
+     */
+    public void resize() {
+      for (final FrameHeader slot : slots) {
+        slot.resetSlotWidth();
+        slot.tileSlotW = slot.slotW;
+      }
+      tiles.invalidate();
+      if (isVirtual()) {
+        adapterTaskList.reset();
+      }
+
+      timeline.setSlots(header.slotsNum, header.level);
+      scrollX = Math.min(scrollX, header.slotW-1);
+      setTopTask(topTask);
+      header.initRulerTexts(timeline.getStart());
+      requestDataWindow();
+    }
+
+    public void changeTopTask(int toRows) {
+      topTask += toRows;
+      if (topTask+tasksNum > getRowCount()) {
+        topTask--;
+      }
+
+      if (topTask < 0) {
+        topTask = 0;
+      }
+    }
+
+    /**
+     * Moves the frame by pixels, whole slots and rows are moved by the start period and the top task.
+     * 
+     * @return true if the frame has been moved.
+     */
+    public boolean scrollBy(int dx, int dy) {
+      final long oldStart = timeline.getStart();
+      final int oldScrollX = scrollX;
+      final int oldTopTask = topTask;
+      final int oldScrollY = scrollY;
+
+      scrollX += dx;
+      final int slots = (int) Timeline.floorDiv(scrollX, header.slotW);
+      if (slots != 0) {
+        scrollX -= slots*header.slotW;
+        changeStartPeriod(slots);
+      }
+
+      scrollY += dy;
+      while (scrollY >= header.slotH && topTask+tasksNum < getRowCount()) {
+        scrollY -= header.slotH;
+        topTask++;
+      }
+      while (scrollY < 0 && topTask > 0) {
+        scrollY += header.slotH;
+        topTask--;
+      }
+      if (scrollY < 0 || topTask+tasksNum >= getRowCount()) {
+        // the first and the last rows are limits
+        scrollY = 0;
+      }
+
+      return (oldStart != timeline.getStart() || oldScrollX != scrollX || oldTopTask != topTask || oldScrollY != scrollY);
+    }
+
+    public int getStartSlot(long start) {
+      return timeline.getStartSlot(start);
+    }
+
+    public int getComplSlot(long start, long durationInMillis) {
+      return timeline.getComplSlot(start, durationInMillis);
+    }
+
+    public void zoomIn(int x) {
+      if (hasNext()) {
+        final ITask clickedTask = getTaskByX(x);
+        next();
+        // align start period of the frame
+        if (clickedTask != null) {
+          setStartPeriod(clickedTask.getStartDate());
+        }
+      }
+    }
+
+    public void zoomOut(int x) {
+      if (hasPrevious()) {
+        final ITask clickedTask = getTaskByX(x);
+        previous();
+        // align start period of the frame
+        if (clickedTask != null) {
+          setStartPeriod(clickedTask.getStartDate());
+        }
+      }
+    }
+
+    /**
+     * @return time shown across the frame.
+     */
+    public double getSpan() {
+      return (double) header.slotInMillis*(size.right - size.left)/header.slotW;
+    }
+
+    /**
+     * Zooms the frame to show the span, the moment under x stays under it. The slots of a level are
+     * stretched until the span reaches the natural span of the next finer level, which is switched to then.
+     * Each step only looks the labels of the visible slots up, the tiles are scaled till {@link #settleZoom()}.
+     */
+    public void zoomTo(double span, int x) {
+      span = Math.max(ladder.getMinSpan(), Math.min(ladder.getMaxSpan(), span));
+      final long anchor = xToMillis(x);
+
+      final int level = ladder.findLevel(span);
+      if (level != ladder.getCurrentIndex()) {
+        ladder.setCurrentIndex(level);
+        header = slots.get(level);
+      }
+      header.setSlotWidth(header.level.getSlotWidth(size.right - size.left, span));
+      timeline.setSlots(header.slotsNum, header.level);
+
+      // the new start is kept on the tile grid, so the cached tiles are still used
+      final long start = anchor - (long) ((double) (x - size.left)*header.slotInMillis/header.slotW);
+      final long origin = (header.tileOrigin != Long.MIN_VALUE ? header.tileOrigin : header.level.alignStart(start));
+      final long slotStart = header.level.addSlots(origin, header.level.getSlot(origin, start));
+      timeline.setStart(slotStart);
+      scrollX = Math.min(header.slotW-1, (int) ((start - slotStart)*header.slotW/header.slotInMillis));
+      header.initRulerTexts(slotStart);
+      requestDataWindow();
+    }
+
+    /**
+     * Renders the tiles by the slot width the zoom has stopped at.
+     */
+    public void settleZoom() {
+      if (header.tileSlotW != header.slotW) {
+        header.tileSlotW = header.slotW;
+        tiles.invalidate();
+      }
+    }
+
+    private long xToMillis(int x) {
+      return timeline.getStart() + (long) ((double) (x - size.left + scrollX)*header.slotInMillis/header.slotW);
+    }
+
+    /**
+     * Moves the selected tasks by whole slots.
+     * 
+     * @return true if the drag has moved them.
+     */
+    public boolean handleSelectionDrag(Point delta) {
+      final int slots = -delta.x/header.slotW;
+      if (slots == 0) {
+        return false;
+      }
+
+      moveSelection(slots);
+      return true;
+    }
+
+    public boolean handleDragEvent(int x, int y, Point delta) {
+      final ITask touchedTask = getTaskByTouch(x, y);
+      if (isEdited(touchedTask)) {
+        // the edited task is moved by whole slots,
+        // 2nd term allows to make moving faster in corners of the frame
+        final boolean horizontal = (Math.abs(delta.x) > header.slotW) ||
+            (Math.abs(delta.x) > 10 && (x < header.slotW || x > header.slotW*(header.slotsNum-1)));
+        if (horizontal) {
+          touchedTask.handleDragEvent(delta);
+          doSelected(touchedTask);
+        }
+
+        return horizontal;
+      }
+
+      final long start = timeline.getStart();
+      if (touchedTask != null) {
+        // handle the event on the task level
+        touchedTask.handleDragEvent(delta);
+        if (start != timeline.getStart()) {
+          doSelected(touchedTask);
+        }
+      } else {
+        // handle the event on the frame level
+        scrollBy(delta.x, delta.y);
+      }
+
+      return true;
+    }
+
+    public ITask getTaskByX(int x) {
+      // the upper visible task in the slot
+      final int position = hitGrid.getUpper(xToSlot(x));
+
+      return (position >= 0 ? taskList.get(position) : null);
+    }
+
+    public ITask getTaskByTouch(int x, int y) {
+      final int position = hitGrid.get(yToRow(y), xToSlot(x));
+
+      return (position >= 0 ? taskList.get(position) : null);
+    }
+
+    public void setSelectedTaskByTouch(int x, int y) {
+      setSelectedTask(getTaskByTouch(x, y));
+    }
+
+    /**
+     * @return true if the task is one of the tasks selected together.
+     */
+    public boolean isInSelection(ITask task) {
+      if (selection.isEmpty()) {
+        return false;
+      }
+
+      final int i = indexOf(task);
+      return (i >= 0 && selection.get(i));
+    }
+
+    public int getSelectionSize() {
+      return selection.cardinality();
+    }
+
+    public List<ITask> getSelection() {
+      final List<ITask> result = new ArrayList<ITask>(selection.cardinality());
+      for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i+1)) {
+        result.add(taskList.get(i));
+      }
+      return result;
+    }
+
+    public void clearSelection() {
+      if (!selection.isEmpty()) {
+        selection.clear();
+        selectionChanges++;
+      }
+    }
+
+    /**
+     * Adds the touched task to the selection or removes it from there, the task becomes the selected one.
+     * 
+     * @return false if there is no task.
+     */
+    public boolean toggleSelectionByTouch(int x, int y) {
+      final ITask task = getTaskByTouch(x, y);
+      final int i = (task != null && !isVirtual() ? indexOf(task) : -1);
+      if (i < 0) {
+        return false;
+      }
+
+      selection.flip(i);
+      selectionChanges++;
+      setSelectedTask(task);
+      return true;
+    }
+
+    /**
+     * Adds the tasks intersecting the time range in the rows to the selection. The lanes are shared, so
+     * their tasks are found by the interval index, while a row per task is checked by itself.
+     * 
+     * @param toRow the last row, inclusive.
+     */
+    public void selectRange(long from, long to, int fromRow, int toRow) {
+      if (isVirtual() || from >= to || fromRow > toRow) {
+        return;
+      }
+
+      if (layout.isLanePacking()) {
+        rangeFromRow = fromRow;
+        rangeToRow = toRow;
+        layout.query(from, to, rangeSelector);
+      } else {
+        final int last = Math.min(toRow, layout.size()-1);
+        for (int position = Math.max(0, fromRow); position <= last; position++) {
+          // the same intersection as the one of the index
+          if (layout.getStart(position) < to && layout.getEnd(position) > from && !removals.get(position)) {
+            selection.set(position);
+          }
+        }
+      }
+      selectionChanges++;
+    }
+
+    /**
+     * Adds the tasks under the rectangle of the body to the selection.
+     */
+    public void selectRect(Rect rect) {
+      final int top = Math.max(rect.top, RULER_H);
+      if (rect.bottom <= top) {
+        return;
+      }
+      selectRange(xToMillis(rect.left), xToMillis(rect.right), topTask + yToRow(top), topTask + yToRow(rect.bottom));
+    }
+
+    /**
+     * Shifts all the selected tasks by the slots of the current level in one batch, so they are laid out
+     * and redrawn once. Only the moved tasks are placed into the lanes again, the rest keep theirs.
+     */
+    public void moveSelection(int slots) {
+      if (selection.isEmpty() || slots == 0) {
+        return;
+      }
+
+      beginUpdate();
+      editJournal.beginAction();
+      for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i+1)) {
+        final TodoTask task = (TodoTask) taskList.get(i);
+        final long oldStart = task.getStartMillis();
+        task.setDates(header.changeToSlots(oldStart, slots), task.getDuration());
+        editJournal.record(task.getId(), oldStart, task.getStartMillis());
+        updateTask(task);
+      }
+      editJournal.endAction();
+      commitUpdate();
+      selectionChanges++;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return ladder.canZoomIn();
+    }
+
+    @Override
+    public FrameHeader next() {
+      ladder.zoomIn();
+      final FrameHeader slot = slots.get(ladder.getCurrentIndex());
+      setSlotSizeInMillis(slot);
+
+      return slot;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+      return ladder.canZoomOut();
+    }
+
+    @Override
+    public int nextIndex() {
+      return ladder.getCurrentIndex()+1;
+    }
+
+    @Override
+    public FrameHeader previous() {
+      ladder.zoomOut();
+      final FrameHeader slot = slots.get(ladder.getCurrentIndex());
+      setSlotSizeInMillis(slot);
+
+      return slot;
+    }
+
+    @Override
+    public int previousIndex() {
+      return ladder.getCurrentIndex()-1;
+    }
+
+    @Override
+    public void remove() {
+      // intentionally clear      
+    }
+
+    @Override
+    public void add(FrameHeader slot) {
+      // intentionally clear      
+    }
+
+    @Override
+    public void set(FrameHeader slot) {
+      // intentionally clear      
+    }
+
+    private void setSlotSizeInMillis(FrameHeader header) {
+      this.header = header;
+      header.resetSlotWidth();
+      settleZoom();
+      timeline.setSlots(header.slotsNum, header.level);
+      scrollX = 0;
+      scrollY = 0;
+
+      timeline.setStart(header.level.alignStart(timeline.getStart()));
+
+      this.header.initRulerTexts(timeline.getStart());
+      requestDataWindow();
+    }
+
+    /**
+     * Positions of the tasks by the visible rows and slots. It's built once for a frame state by the first
+     * hit test, so the touches of a frame look the tasks up in an array.
+     */
+    private class HitGrid implements IntervalIndex.Visitor {
+      private int[] cells = new int[0];
+      private int rows;
+      private int columns;
+      // the frame state the grid has been built for
+      private FrameHeader builtHeader;
+      private long builtStart;
+      private int builtTopTask;
+      private int builtLayoutMods;
+      private int builtTaskChanges = -1;
+
+      /**
+       * @param row visible row, 0 is the top one.
+       * @param slot visible slot.
+       * @return position of the task or -1.
+       */
+      public int get(int row, int slot) {
+        ensureBuilt();
+        if (row < 0 || row >= rows || slot < 0 || slot >= columns) {
+          return -1;
+        }
+        return cells[row*columns + slot];
+      }
+
+      /**
+       * @return position of the task in the upper row of the slot or -1.
+       */
+      public int getUpper(int slot) {
+        ensureBuilt();
+        if (slot < 0 || slot >= columns) {
+          return -1;
+        }
+        for (int i = slot; i < rows*columns; i += columns) {
+          if (cells[i] >= 0) {
+            return cells[i];
+          }
+        }
+        return -1;
+      }
+
+      private void ensureBuilt() {
+        if (builtHeader != header || builtStart != timeline.getStart() || builtTopTask != topTask
+            || rows != getVisibleRows() || columns != getVisibleSlots()
+            || builtLayoutMods != layout.getModCount() || builtTaskChanges != taskChanges) {
+          build();
+        }
+      }
+
+      private void build() {
+        builtHeader = header;
+        builtStart = timeline.getStart();
+        builtTopTask = topTask;
+        builtLayoutMods = layout.getModCount();
+        builtTaskChanges = taskChanges;
+        rows = getVisibleRows();
+        columns = getVisibleSlots();
+        if (cells.length < rows*columns) {
+          cells = new int[rows*columns];
+        }
+        Arrays.fill(cells, -1);
+
+        if (layout.isLanePacking()) {
+          layout.query(timeline.getSlotStart(0), timeline.getSlotStart(columns), this);
+        } else {
+          final int last = Math.min(topTask+rows, taskList.size());
+          for (int i = topTask; i < last; i++) {
+            final ITask task = taskList.get(i);
+            fill(i - topTask, task.getStartSlot(), task.getComplSlot(), i);
+          }
+        }
+      }
+
+      @Override
+      public boolean visit(int position) {
+        final int start = timeline.getStartSlot(layout.getStart(position));
+        final int compl = timeline.getComplSlot(layout.getStart(position), layout.getEnd(position) - layout.getStart(position));
+        fill(layout.getRow(position) - topTask, start, compl, position);
+        return true;
+      }
+
+      private void fill(int row, int startSlot, int complSlot, int position) {
+        if (row < 0 || row >= rows) {
+          return;
+        }
+        // the tasks come by their starts, so the earlier one keeps the slot
+        for (int slot = Math.max(0, startSlot); slot <= Math.min(columns-1, complSlot); slot++) {
+          if (cells[row*columns + slot] < 0) {
+            cells[row*columns + slot] = position;
+          }
+        }
+      }
+    }
+
+    /**
+     * Draws the visited tasks in their lanes.
+     */
+    private class LaneDrawer implements IntervalIndex.Visitor {
+      private Canvas canvas;
+
+      @Override
+      public boolean visit(int position) {
+        final int lane = layout.getRow(position);
+        if (lane >= topTask && lane < topTask+getVisibleRows()) {
+          taskList.get(position).draw(RULER_H - scrollY + (lane-topTask)*header.slotH, canvas, textPaint);
+        }
+        return true;
+      }
+    }
+
+    /**
+     * Adds the visited dependencies to the link path, if they cross the visible rows.
+     */
+    private class LinkDrawer implements IntervalIndex.Visitor {
+      private final Path path = new Path();
+
+      @Override
+      public boolean visit(int edge) {
+        final int from = layout.indexOf(dependencies.getPredecessor(edge));
+        final int to = layout.indexOf(dependencies.getSuccessor(edge));
+        final int fromRow = getRowOf(from) - topTask;
+        final int toRow = getRowOf(to) - topTask;
+        final int rows = getVisibleRows();
+        if ((fromRow < 0 && toRow < 0) || (fromRow >= rows && toRow >= rows)) {
+          return true;
+        }
+
+        // from the end of the predecessor bar to the start of the successor bar
+        final long fromStart = layout.getStart(from);
+        final int x1 = slotToX(clampSlot(timeline.getComplSlot(fromStart, layout.getEnd(from) - fromStart) + 1));
+        final int x2 = slotToX(clampSlot(timeline.getStartSlot(layout.getStart(to))));
+        final int y1 = rowToY(fromRow);
+        final int y2 = rowToY(toRow);
+
+        path.moveTo(x1, y1);
+        path.lineTo(x1+LINK_STEP, y1);
+        path.lineTo(x1+LINK_STEP, y2);
+        path.lineTo(x2, y2);
+        path.moveTo(x2-ARROW_SIZE, y2-ARROW_SIZE);
+        path.lineTo(x2, y2);
+        path.lineTo(x2-ARROW_SIZE, y2+ARROW_SIZE);
+
+        return true;
+      }
+
+      /**
+       * Far away ends are only drawn next to the frame.
+       */
+      private int clampSlot(int slot) {
+        return Math.max(-1, Math.min(slot, getVisibleSlots()+1));
+      }
+
+      /**
+       * @return middle of the row relative to the top task, which could be beyond the frame.
+       */
+      private int rowToY(int row) {
+        final int clamped = Math.max(-1, Math.min(row, getVisibleRows()+1));
+        return RULER_H - scrollY + clamped*header.slotH + header.slotH/2;
+      }
+    }
+
+    /**
+     * Draws all the visible dependencies as a single path.
+     */
+    private void drawLinks(Canvas canvas) {
+      if (dependencies.size() == 0 || isVirtual()) {
+        return;
+      }
+
+      if (spansDirty) {
+        spansDirty = false;
+        dependencies.forEach(spanUpdater);
+      }
+
+      linkDrawer.path.reset();
+      dependencies.query(timeline.getSlotStart(0), timeline.getSlotStart(getVisibleSlots()), linkDrawer);
+      canvas.drawPath(linkDrawer.path, linkPaint);
+    }
+
+    public void setDetailThreshold(int detailThreshold) {
+      this.detailThreshold = detailThreshold;
+    }
+
+    /**
+     * Counts the tasks of the visible slots by the sorted task bounds of the index, i.e. O(log n) per slot.
+     */
+    public void countDensity() {
+      maxDensity = 0;
+      if (isVirtual()) {
+        // nothing is known beyond the adapter rows
+        return;
+      }
+
+      final int slots = getVisibleSlots();
+      if (density.length < slots) {
+        density = new int[header.level.getSlotsNum()+1];
+      }
+      for (int i = 0; i < slots; i++) {
+        density[i] = layout.count(timeline.getSlotStart(i), timeline.getSlotStart(i+1));
+        maxDensity = Math.max(maxDensity, density[i]);
+      }
+    }
+
+    /**
+     * @return true if the frame is drawn as density of the tasks instead of the tasks.
+     */
+    public boolean isAggregated() {
+      return (maxDensity > detailThreshold);
+    }
+
+    public void drawGrid(Canvas canvas) {
+      paint.setColor(Color.DKGRAY);
+      for (int x = slotToX(0), i = 0; i < getVisibleSlots(); x += header.slotW, i++) {
+        canvas.drawLine(x, RULER_H, x, size.bottom, paint);
+      }
+    }
+
+    public void drawTimeSlots(Canvas canvas) {
+      countDensity();
+      if (isAggregated()) {
+        drawDensity(canvas);
+        return;
+      }
+
+      // the bars of the tasks are cached in the tiles
+      tiles.draw(canvas);
+    }
+
+    private void drawDensity(Canvas canvas) {
+      final int bodyH = size.bottom - size.top - RULER_H;
+      for (int x = slotToX(0), i = 0; i < getVisibleSlots(); x += header.slotW, i++) {
+        final int h = (int) ((long) bodyH*density[i]/maxDensity);
+        taskRect.set(x+1, size.bottom-h, x+header.slotW-1, size.bottom);
+        canvas.drawRect(taskRect, densityPaint);
+      }
+    }
+
+    public void drawTasks(Canvas canvas) {
+      if (isAggregated()) {
+        // the density has been drawn instead
+        return;
+      }
+
+      paint.setColor(Color.WHITE);
+
+      canvas.save();
+      canvas.clipRect(size.left, RULER_H, size.right, size.bottom);
+      drawLinks(canvas);
+      if (layout.isLanePacking()) {
+        laneDrawer.canvas = canvas;
+        findTasks(0, getVisibleSlots()-1, laneDrawer);
+      } else {
+        // avoid sublist and iterator allocation on each frame
+        final int last = Math.min(topTask+getVisibleRows(), taskList.size());
+        for (int y = RULER_H-scrollY, i = topTask; i < last; y += header.slotH, i++) {
+          taskList.get(i).draw(y, canvas, textPaint);
+// TODO extract to ITask
+        }
+      }
+      canvas.restore();
+    }
+  }
+
+  public interface ITask {
     long getId();
     String getName();
     Date getStartDate();
     int getDuration();
     Date getComplDate();
+    long getStartMillis();
+    long getComplMillis();
     int getStartSlot();
     int getComplSlot();
     boolean isDependsOn();
@@ -440,324 +2051,1962 @@ public class GanttChartView extends View {
     void draw(int y, Canvas canvas, Paint textPaint);
   }
 
-  public class TodoTask implements ITask {
-    protected final long id;
-    protected final String name;
-    protected final Date start;
-    protected final int duration;
+  public class TodoTask implements ITask {
+    protected final long id;
+    protected String name;
+    protected long start;
+    protected int duration;
+    protected long durationInMillis;
+    // the edited task is moved by dragging and it's drawn over the body tiles
+    private boolean edited;
+
+    public TodoTask(ITask task) {
+      this(task.getId(), task.getName(), task.getStartMillis(), task.getDuration());
+    }
+
+    public TodoTask(long id, String name, Date start, int duration) {
+      this(id, name, start.getTime(), duration);
+    }
+
+    protected TodoTask(long id, String name, long start, int duration) {
+      this.id = id;
+      this.name = name;
+      this.start = start;
+      this.duration = duration;
+      this.durationInMillis = duration*HOUR_IN_MILLIS;
+    }
+
+    /**
+     * The frame must be notified of the change, see {@link TimeFrame#updateTask(ITask)}.
+     */
+    protected void setDates(long start, int duration) {
+      this.start = start;
+      this.duration = duration;
+      this.durationInMillis = duration*HOUR_IN_MILLIS;
+    }
+
+    protected void setName(String name) {
+      this.name = name;
+    }
+
+    public boolean isEdited() {
+      return edited;
+    }
+
+    protected void setEdited(boolean edited) {
+      this.edited = edited;
+    }
+    
+    @Override
+    public long getId() {
+      return id;
+    }
+    
+    public String getName() {
+      return name;
+    }
+    
+    @Override
+    public Date getStartDate() {
+      return new Date(getStartMillis());
+    }
+    
+    @Override
+    public int getDuration() {
+      return duration;
+    }
+    
+    @Override
+    public Date getComplDate() {
+      return new Date(getComplMillis());
+    }
+
+    @Override
+    public long getStartMillis() {
+      return start;
+    }
+
+    @Override
+    public long getComplMillis() {
+      return getStartMillis() + durationInMillis;
+    }
+    
+    @Override
+    public int getStartSlot() {
+      final int startSlot = frame.getStartSlot(getStartMillis());
+      if (startSlot < 0 && frame.getComplSlot(getStartMillis(), durationInMillis) >= 0) {
+        return 0;
+      }
+      
+      return startSlot;
+    }
+    
+    @Override
+    public int getComplSlot() {
+      final int finishSlot = frame.getComplSlot(getStartMillis(), durationInMillis);
+      if (frame.getStartSlot(getStartMillis()) < frame.getVisibleSlots() && finishSlot >= frame.getVisibleSlots()) {
+        return frame.getVisibleSlots()-1;
+      }
+      
+      return finishSlot;
+    }
+    
+    @Override
+    public boolean isDependsOn() {
+      return dependencies.hasPredecessors(getId());
+    }
+
+    @Override
+    public void handleDragEvent(Point delta) {
+      if (!edited) {
+        // redirect back to the frame
+        frame.scrollBy(delta.x, delta.y);
+        return;
+      }
+
+      final int slot = (int) Math.signum(delta.x);
+
+      if (slot == +1 && getStartSlot() == 0) {
+        // scroll in first position
+        frame.changeStartPeriod(-slot);
+      }
+      if (slot == -1 && getStartSlot() == frame.header.slotsNum-1) {
+        // scroll in last position
+        frame.changeStartPeriod(-slot);
+      }
+      final long oldStart = start;
+      start = frame.header.changeToSlots(start, -slot);
+      if (!frame.isVirtual()) {
+        // the drag is coalesced into one delta by the gesture action
+        editJournal.record(id, oldStart, start);
+      }
+      frame.updateTask(this);
+    }
+
+    @Override
+    public void draw(int y, Canvas canvas, Paint textPaint) {
+      final Rect rect = taskRect;
+      rect.set(slotToX(getStartSlot())+1, y+1, slotToX(getComplSlot())+frame.header.slotW-1, y+frame.header.slotH-1);
+      drawBar(rect, canvas);
+      if (scheduleWorker != null) {
+        drawSlack(rect, canvas);
+      }
+      canvas.drawText(name, rect.left, (rect.bottom+rect.top)/2+paint.getTextSize()/2, textPaint);
+      if (this == frame.selectedTask || frame.isInSelection(this)) {
+        canvas.drawRect(rect, selectedPaint);
+      }
+    }
+
+    protected void drawBar(Rect rect, Canvas canvas) {
+      if (edited) {
+        // the edited task moves too often to be kept in the body tiles
+        canvas.drawRect(rect, editedPaint);
+      }
+      // otherwise the bar is already rendered by the body tiles
+    }
+
+    /**
+     * Outlines the critical task, or draws the float of the task, i.e. the time it could be delayed by.
+     */
+    protected void drawSlack(Rect rect, Canvas canvas) {
+      final long slack = slackTable.getSlack(id);
+      if (slack == CriticalPath.UNKNOWN) {
+        return;
+      }
+      if (slack == 0) {
+        canvas.drawRect(rect, criticalPaint);
+        return;
+      }
+
+      final long lateFinish = slackTable.getLateFinish(id);
+      final int lateSlot = Math.min(frame.getComplSlot(getStartMillis(), lateFinish - getStartMillis()), frame.getVisibleSlots());
+      final int x = slotToX(lateSlot+1) - 1;
+      if (x > rect.right) {
+        canvas.drawLine(rect.right, rect.bottom-1, x, rect.bottom-1, slackPaint);
+      }
+    }
+  }
+
+  /**
+   * The task being edited from the start, the other tasks become edited by {@link GanttChartView#setEditedTask(ITask)}.
+   */
+  public class EditedTask extends TodoTask {
+    public EditedTask(ITask task) {
+      this(task.getId(), task.getName(), task.getStartMillis(), task.getDuration());
+    }
+
+    public EditedTask(long id, String name, Date start, int duration) {
+      this(id, name, start.getTime(), duration);
+    }
+
+    protected EditedTask(long id, String name, long start, int duration) {
+      super(id, name, start, duration);
+
+      setEdited(true);
+    }
+  }
+
+  private static boolean isEdited(ITask task) {
+    return (task instanceof TodoTask && ((TodoTask) task).isEdited());
+  }
+
+  
+  private enum TouchMode {
+    DRAG, ZOOM;
+  };
+
+  private static class MotionEventWrapper {
+    private int action;
+    private int x, y;
+
+    public MotionEventWrapper() {
+      update(-1, 0, 0);
+    }
+
+    public void update(int action, int x, int y) {
+      this.action = action;
+      this.x = x;
+      this.y = y;
+    }
+
+    public void update(MotionEvent event) {
+      update(event.getAction(), (int) event.getX(), (int) event.getY());
+    }
+  }
+  
+  /**
+   * The frame state a touch can change, it's compared before and after the touch to find the layers to redraw.
+   */
+  private class FrameState {
+    private final Rect dirty = new Rect();
+    private FrameHeader header;
+    private long start;
+    private int slotW;
+    private int scrollX;
+    private int topTask;
+    private int scrollY;
+    private ITask selectedTask;
+    private int selectionChanges;
+    private final Rect lasso = new Rect();
+    private int editedTask;
+    private long editedStart;
+    private boolean zooming;
+
+    public void capture() {
+      header = frame.header;
+      start = frame.timeline.getStart();
+      slotW = header.slotW;
+      scrollX = frame.scrollX;
+      topTask = frame.topTask;
+      scrollY = frame.scrollY;
+      selectedTask = frame.selectedTask;
+      selectionChanges = frame.selectionChanges;
+      lasso.set(lassoRect);
+      editedTask = frame.editedTask;
+      editedStart = (editedTask >= 0 ? frame.taskList.get(editedTask).getStartMillis() : 0);
+      zooming = (touchHandler.getMode() == TouchMode.ZOOM);
+    }
+
+    /**
+     * Invalidates what the frame has changed since the capture: everything if the time axis has changed,
+     * the body if the rows or the edited task have moved, and the rows of the selection if it has changed.
+     *
+     * @return false if nothing has been invalidated.
+     */
+    public boolean invalidateChanges() {
+      if (header != frame.header || start != frame.timeline.getStart() || slotW != frame.header.slotW
+          || scrollX != frame.scrollX || zooming || touchHandler.getMode() == TouchMode.ZOOM) {
+        // the ruler and the tiles move, the pitch circle is over them
+        renderMetrics.recordFull();
+        invalidate();
+        return true;
+      }
+
+      dirty.setEmpty();
+      if (topTask != frame.topTask || scrollY != frame.scrollY || editedTask != frame.editedTask
+          || selectionChanges != frame.selectionChanges
+          || (editedTask >= 0 && editedStart != frame.taskList.get(editedTask).getStartMillis())) {
+        dirty.set(size.left, RULER_H, size.right, size.bottom);
+      } else if (selectedTask != frame.selectedTask) {
+        unionRow(selectedTask);
+        unionRow(frame.selectedTask);
+      }
+      if (!lasso.equals(lassoRect)) {
+        // the lasso is over the body, only the rectangles it has left and covered are drawn again
+        unionOverlay(lasso);
+        unionOverlay(lassoRect);
+      }
+
+      if (dirty.isEmpty()) {
+        renderMetrics.recordSkipped();
+        return false;
+      }
+      renderMetrics.recordPartial();
+      invalidate(dirty);
+      return true;
+    }
+
+    private void unionOverlay(Rect rect) {
+      if (!rect.isEmpty()) {
+        // including the stroke
+        dirty.union(rect.left-1, rect.top-1, rect.right+1, rect.bottom+1);
+      }
+    }
+
+    private void unionRow(ITask task) {
+      if (task == null) {
+        return;
+      }
+
+      final int position = frame.indexOf(task);
+      if (position < 0) {
+        // the task is gone, its row isn't known
+        dirty.set(size.left, RULER_H, size.right, size.bottom);
+        return;
+      }
+      final int y = RULER_H + (frame.getRowOf(position) - frame.topTask)*frame.header.slotH - frame.scrollY;
+      if (y + frame.header.slotH > RULER_H && y < size.bottom) {
+        dirty.union(size.left, Math.max(RULER_H, y), size.right, Math.min(size.bottom, y + frame.header.slotH));
+      }
+    }
+  }
+
+  private class TouchHandler {
+    private final MotionEventWrapper prev = new MotionEventWrapper();
+    // the finger which leads the gesture, the pointers are found by id since their indices shift
+    private int activePointerId;
+    // the latest sample of the gesture, the moves between two frames are coalesced into it
+    private int pointerCount;
+    private float x0, y0, x1, y1;
+    // reused by every move
+    private final Point delta = new Point();
+    // a move has been applied since the last frame, so the next ones wait for the frame
+    private boolean moveApplied;
+    private boolean movePending;
+    private float oldDist = 0;
+    // span of the frame when the pinch has started
+    private double pinchSpan;
+    private final Point pitchCenter = new Point();
+    private VelocityTracker velocityTracker;
+    // the finger has left the touch slop
+    private boolean dragging;
+    // the edited task is moving, so the frame must not fling
+    private boolean draggingTask;
+    // in the multiple selection the finger moves the selected tasks, a long press beside them starts
+    // the lasso and a plain drag pans the frame
+    private boolean draggingSelection;
+    private boolean lassoing;
+    private final Runnable lassoStarter = new Runnable() {
+      @Override
+      public void run() {
+        if (touching && !dragging && getMode() == TouchMode.DRAG) {
+          lassoing = true;
+        }
+      }
+    };
+    private int downX, downY;
+    // the moves of the gesture are one action of the journal
+    private boolean journaling;
+    // a finger is on the view
+    private boolean touching;
+
+    public void handle(final MotionEvent event) {
+      final int action = event.getAction() & MotionEvent.ACTION_MASK;
+      if (action == MotionEvent.ACTION_DOWN) {
+        activePointerId = event.getPointerId(0);
+      }
+      // the pointer going up is still in the event
+      sample(event, action == MotionEvent.ACTION_POINTER_UP ? findPointerUpIndex(event) : -1);
+
+      if (velocityTracker == null) {
+        velocityTracker = VelocityTracker.obtain();
+      }
+      velocityTracker.addMovement(event);
+
+      switch (action) {
+      case MotionEvent.ACTION_DOWN: {
+        // catch the frame if it's flinging
+        scroller.forceFinished(true);
+        flinging = false;
+        touching = true;
+        // initialize it for make delta
+        prev.update(event);
+        dragging = false;
+        movePending = false;
+        final ITask touchedTask = frame.getTaskByTouch(prev.x, prev.y);
+        draggingTask = isEdited(touchedTask);
+        draggingSelection = multiSelection && touchedTask != null && frame.isInSelection(touchedTask);
+        lassoing = false;
+        if (multiSelection && !draggingSelection && !draggingTask) {
+          postDelayed(lassoStarter, ViewConfiguration.getLongPressTimeout());
+        }
+        downX = prev.x;
+        downY = prev.y;
+        endJournalAction();
+        editJournal.beginAction();
+        journaling = true;
+        break;
+      }
+      case MotionEvent.ACTION_POINTER_DOWN: {
+        // the second finger zooms instead
+        removeCallbacks(lassoStarter);
+        lassoing = false;
+        lassoRect.setEmpty();
+        oldDist = spacing();
+        pinchSpan = frame.getSpan();
+        calcPitchCenter();
+        break;
+      }
+      case MotionEvent.ACTION_POINTER_UP: {
+        frame.settleZoom();
+        if (pointerCount > 1) {
+          // the remaining fingers pinch on from where they are
+          oldDist = spacing();
+          pinchSpan = frame.getSpan();
+          calcPitchCenter();
+          break;
+        }
+        // the finger left on the view drags on from where it is, not from where the lifted one was
+        movePending = false;
+        prev.update(MotionEvent.ACTION_MOVE, (int) x0, (int) y0);
+        downX = prev.x;
+        downY = prev.y;
+        oldDist = 0;
+        calcPitchCenter();
+        // the fling follows the remaining finger only
+        velocityTracker.clear();
+        break;
+      }
+      case MotionEvent.ACTION_MOVE: {
+        // the historical samples only matter for the velocity, the frame follows the latest one
+        if (moveApplied) {
+          movePending = true;
+        } else {
+          applyMove();
+        }
+        break;
+      }
+      case MotionEvent.ACTION_UP: {
+        if (movePending) {
+          // the last position mustn't be lost
+          applyMove();
+        }
+        removeCallbacks(lassoStarter);
+        if (lassoing) {
+          if (dragging) {
+            frame.selectRect(lassoRect);
+          }
+          lassoing = false;
+          lassoRect.setEmpty();
+        } else if (!dragging && multiSelection) {
+          if (!frame.toggleSelectionByTouch(prev.x, prev.y)) {
+            // a tap beside the tasks drops the selection
+            frame.clearSelection();
+          }
+        } else if (!dragging) {
+//          frame.handleUpEvent(prev.x, prev.y, getDalta())
+          frame.setSelectedTaskByTouch(prev.x, prev.y);
+        } else if (!draggingTask && !draggingSelection && getMode() == TouchMode.DRAG) {
+          velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+          final int vx = (int) velocityTracker.getXVelocity();
+          final int vy = (int) velocityTracker.getYVelocity();
+          if (Math.abs(vx) > minFlingVelocity || Math.abs(vy) > minFlingVelocity) {
+            fling(-vx, -vy);
+          }
+        }
+        releaseVelocityTracker();
+        endJournalAction();
+        touching = false;
+        break;
+      }
+      case MotionEvent.ACTION_CANCEL: {
+        movePending = false;
+        touching = false;
+        removeCallbacks(lassoStarter);
+        lassoing = false;
+        lassoRect.setEmpty();
+        releaseVelocityTracker();
+        endJournalAction();
+        break;
+      }
+      default:
+        break;
+      }
+    }
+
+    public boolean hasPendingMove() {
+      return movePending;
+    }
+
+    public boolean isTouching() {
+      return touching;
+    }
+
+    private void endJournalAction() {
+      if (journaling) {
+        journaling = false;
+        editJournal.endAction();
+      }
+    }
+
+    public void applyPendingMove() {
+      if (movePending) {
+        applyMove();
+      }
+    }
+
+    /**
+     * Lets the next move be applied at once, since the frame has been drawn or there is nothing to draw.
+     *
+     * @return true if a move is waiting to be applied.
+     */
+    public boolean onFrameDone() {
+      moveApplied = false;
+      return movePending;
+    }
+
+    private void applyMove() {
+      movePending = false;
+      moveApplied = true;
+      if (getMode() == TouchMode.DRAG) {
+        // clean the zoom functionality
+        calcPitchCenter();
+        calcDelta();
+        if (!dragging && Math.abs(delta.x) < touchSlop && Math.abs(delta.y) < touchSlop) {
+          // still a tap
+          return;
+        }
+        if (!dragging) {
+          // a drag before the long press pans
+          removeCallbacks(lassoStarter);
+        }
+        dragging = true;
+        if (lassoing) {
+          lassoRect.set(Math.min(downX, (int) x0), Math.min(downY, (int) y0), Math.max(downX, (int) x0), Math.max(downY, (int) y0));
+          return;
+        }
+        if (draggingSelection) {
+          // the selected tasks move together by whole slots
+          if (frame.handleSelectionDrag(delta)) {
+            prev.update(MotionEvent.ACTION_MOVE, (int) x0, (int) y0);
+          }
+          return;
+        }
+        // delegate to the time frame
+        if (frame.handleDragEvent(prev.x, prev.y, delta)) {
+          prev.update(MotionEvent.ACTION_MOVE, (int) x0, (int) y0);
+        }
+      } else if (getMode() == TouchMode.ZOOM) {
+        // pitch moving
+        final float newDist = spacing();
+        if (oldDist > 0 && newDist > 0) {
+          // spreading the fingers shortens the span
+          frame.zoomTo(pinchSpan*oldDist/newDist, pitchCenter.x);
+        }
+      }
+    }
+
+    /**
+     * Samples the active pointer and the first one beside it, leaving out the pointer going up.
+     *
+     * @param lifted index of the pointer going up or -1.
+     */
+    private void sample(MotionEvent event, int lifted) {
+      int active = event.findPointerIndex(activePointerId);
+      if (active < 0 || active == lifted) {
+        // the finger which has led the gesture is gone, the next one leads it
+        active = (lifted == 0 ? 1 : 0);
+        activePointerId = event.getPointerId(active);
+      }
+      pointerCount = event.getPointerCount() - (lifted >= 0 ? 1 : 0);
+      x0 = event.getX(active);
+      y0 = event.getY(active);
+      if (pointerCount > 1) {
+        int second = 0;
+        while (second == active || second == lifted) {
+          second++;
+        }
+        x1 = event.getX(second);
+        y1 = event.getY(second);
+      }
+    }
+
+    private int findPointerUpIndex(MotionEvent event) {
+      // the bits named the pointer id in API 5 hold the index of the pointer, API 8 has renamed them
+      return (event.getAction() & MotionEvent.ACTION_POINTER_ID_MASK) >> MotionEvent.ACTION_POINTER_ID_SHIFT;
+    }
+
+    private void releaseVelocityTracker() {
+      if (velocityTracker != null) {
+        velocityTracker.recycle();
+        velocityTracker = null;
+      }
+    }
+
+    public Point getPitchCenter() {
+      return pitchCenter;
+    }
+
+    public TouchMode getMode() {
+      return (pointerCount > 1 ? TouchMode.ZOOM : TouchMode.DRAG);
+    }
+
+    private void calcDelta() {
+      delta.x = (int) (prev.x - x0); delta.y = (int) (prev.y - y0);
+    }
+
+    private void calcPitchCenter() {
+      if (pointerCount > 1) {
+        // midpoint
+        pitchCenter.x = (int) ((x0 + x1) / 2);
+        pitchCenter.y = (int) ((y0 + y1) / 2);
+      } else {
+        pitchCenter.x = -1; pitchCenter.y = -1;
+      }
+    }
+
+    private float spacing() {
+      if (pointerCount > 1) {
+        final float x = x0 - x1;
+        final float y = y0 - y1;
+        return FloatMath.sqrt(x*x + y*y);
+      }
+
+      return 0;
+    }
+  }
+
+  private final TouchHandler touchHandler = new TouchHandler();
+  // applies the moves coalesced while a frame has been drawn
+  private final Runnable pendingMoveApplier = new Runnable() {
+    @Override
+    public void run() {
+      if (touchHandler.hasPendingMove()) {
+        applyTouch(null);
+      }
+    }
+  };
+  private boolean layeredRendering;
+  // the ruler and the grid drawn once for the layered rendering
+  private final AxisLayers axisLayers = new AxisLayers();
+  // the layer type set to the view, the hardware layer is only kept while the view is idle
+  private int layerType = LAYER_TYPE_NONE;
+  private Method setLayerType;
+  // the layer type is set out of drawing once the fling has finished
+  private final Runnable layerTypeUpdater = new Runnable() {
+    @Override
+    public void run() {
+      updateLayerType();
+    }
+  };
+  private boolean multiSelection;
+  // the moves of the tasks by the user, they outlive the frame as the ids do
+  private final EditJournal editJournal = new EditJournal();
+  private final EditJournal.Target journalTarget = new EditJournal.Target() {
+    @Override
+    public void setStart(long id, long start) {
+      final int i = (frame.isVirtual() ? -1 : frame.layout.indexOf(id));
+      if (i >= 0) {
+        // the task could be gone since it was moved
+        frame.updateTask(id, start, frame.taskList.get(i).getDuration());
+      }
+    }
+  };
+  // the rectangle being drawn by the finger to select the tasks under it
+  private final Rect lassoRect = new Rect();
+  private final FrameState touchedState = new FrameState();
+  private final RenderMetrics renderMetrics = new RenderMetrics();
+  private final Scroller scroller;
+  private final int touchSlop;
+  private final int minFlingVelocity;
+  private final int maxFlingVelocity;
+  // last position of the scroller applied to the frame
+  private int flingX, flingY;
+  private boolean flinging;
+  // drawing must not allocate, so everything is set up once
+  private final Paint paint = new Paint();
+  private final Paint selectedPaint = new Paint();
+  private final Paint editedPaint = new Paint();
+  private final Paint rulerPaint = new Paint();
+  private final Paint textPaint = new Paint();
+  private final Paint pitchPaint = new Paint();
+  private final Paint densityPaint = new Paint();
+  private final Paint linkPaint = new Paint();
+  private final Paint criticalPaint = new Paint();
+  private final Paint slackPaint = new Paint();
+  private final Rect taskRect = new Rect();
+
+
+  public GanttChartView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+
+    scroller = new Scroller(context);
+    final ViewConfiguration configuration = ViewConfiguration.get(context);
+    touchSlop = configuration.getScaledTouchSlop();
+    minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+    maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+
+    selectedPaint.setColor(Color.GREEN);
+    selectedPaint.setStyle(Style.STROKE);
+    selectedPaint.setStrokeWidth(2);
+
+    editedPaint.setColor(Color.GREEN);
+
+    rulerPaint.setColor(Color.GRAY);
+    rulerPaint.setStrokeWidth(2);
+    rulerPaint.setTextSize(16);
+
+    textPaint.setColor(Color.GRAY);
+    textPaint.setStrokeWidth(2);
+    textPaint.setTextSize(20);
+
+    pitchPaint.setStyle(Style.STROKE);
+    pitchPaint.setColor(Color.DKGRAY);
+
+    densityPaint.setColor(Color.GRAY);
+
+    linkPaint.setStyle(Style.STROKE);
+    linkPaint.setColor(Color.LTGRAY);
+    linkPaint.setStrokeWidth(2);
+
+    criticalPaint.setStyle(Style.STROKE);
+    criticalPaint.setColor(Color.RED);
+    criticalPaint.setStrokeWidth(2);
+
+    slackPaint.setColor(Color.GRAY);
+    slackPaint.setStrokeWidth(2);
+  }
+
+  public void setCallback(ICallback callback) {
+    this.callback = callback;
+  }
+
+  private void doInitComplete() {
+    if (callback != null) {
+      callback.onInitComplete(this);
+    }
+  }
+
+  /**
+   * Refreshes the tasks, the callback or the provider puts the current tasks and the view keeps
+   * the ones it already has, so the selection, the edited task and the position are kept too.
+   */
+  private boolean doDataRequest() {
+    if (dataRequestsDeferred) {
+      // the restored snapshot is drawn first
+      dataRequestDeferred = true;
+      return true;
+    }
+    if (frame.isVirtual()) {
+      // the adapter rows are fetched again, the adapter is the only source of the tasks then
+      frame.clearTasks();
+      if (callback != null) {
+        callback.onDataRequest(this);
+      }
+      return true;
+    }
+
+    if (dataProvider != null) {
+      cancelDataWindow();
+      // the loaded tasks are shown till the new windows replace them
+      loadedFrom = loadedTo = 0;
+      requestDataWindow();
+      return true;
+    } else if (callback != null) {
+      final long begin = renderMetrics.begin();
+      frame.beginRefresh();
+      try {
+        callback.onDataRequest(this);
+      } finally {
+        frame.endRefresh();
+      }
+      renderMetrics.end(RenderMetrics.Section.DATA_REQUEST, begin);
+      invalidate();
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Makes the view load tasks asynchronously by time windows around the frame, the provider isn't asked
+   * while the view shows the rows of an adapter.
+   * 
+   * @param dataProvider is used instead of {@link ICallback#onDataRequest(GanttChartView)}, null turns it back.
+   */
+  public void setDataProvider(IDataProvider dataProvider) {
+    cancelDataWindow();
+    pendingRowState = null;
+    this.dataProvider = dataProvider;
+  }
 
-    public TodoTask(ITask task) {
-      this(task.getId(), task.getName(), task.getStartDate(), task.getDuration());
+  /**
+   * Requests the tasks around the frame unless they are loaded or being loaded.
+   */
+  private void requestDataWindow() {
+    if (dataProvider == null || frame == null || frame.isVirtual()) {
+      return;
+    }
+    if (dataRequestsDeferred) {
+      dataRequestDeferred = true;
+      return;
     }
 
-    public TodoTask(long id, String name, Date start, int duration) {
-      this.id = id;
-      this.name = name;
-      this.start = start;
-      this.duration = duration;
+    final long start = frame.timeline.getStart();
+    final long compl = frame.timeline.getCompl();
+    final long margin = (compl - start)*PREFETCH_FRAMES;
+    // the half of the margin is still enough to keep scrolling
+    final long needFrom = start - margin/2;
+    final long needTo = compl + margin/2;
+    if ((loadedFrom <= needFrom && needTo <= loadedTo) || (pendingRequest != null && pendingRequest.covers(needFrom, needTo))) {
+      return;
     }
-    
-    @Override
-    public long getId() {
-      return id;
+
+    // the frame has gone away from the window being loaded
+    cancelDataWindow();
+
+    final WindowRequest request = new WindowRequest(start - margin, compl + margin);
+    pendingRequest = request;
+    // the field is changed on this thread only, a new provider cancels the request
+    final IDataProvider provider = dataProvider;
+    getDataExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        if (request.isCancelled()) {
+          return;
+        }
+
+        provider.onWindowRequest(request);
+        if (!request.isCancelled()) {
+          post(new Runnable() {
+            @Override
+            public void run() {
+              mergeDataWindow(request);
+            }
+          });
+        }
+      }
+    });
+  }
+
+  private void mergeDataWindow(WindowRequest request) {
+    if (request != pendingRequest || frame == null || frame.isVirtual()) {
+      // stale one or the adapter has been set while loading
+      return;
     }
-    
-    public String getName() {
-      return name;
+    pendingRequest = null;
+    renderMetrics.record(RenderMetrics.Section.DATA_WINDOW, System.nanoTime() - request.requested);
+
+    // the window has the current tasks of its time, the windows overlap, so the tasks could already be here
+    final long begin = renderMetrics.begin();
+    // the trimmed tasks are dropped by the same batch
+    frame.beginUpdate();
+    frame.beginRefresh();
+    for (final TaskData task : request.tasks) {
+      frame.putTask(task.id, task.name, task.start, task.duration);
     }
-    
-    @Override
-    public Date getStartDate() {
-      return start;
+    frame.endRefresh(request.from, request.to);
+
+    if (loadedFrom < loadedTo && request.from <= loadedTo && loadedFrom <= request.to) {
+      loadedFrom = Math.min(loadedFrom, request.from);
+      loadedTo = Math.max(loadedTo, request.to);
+    } else {
+      loadedFrom = request.from;
+      loadedTo = request.to;
     }
-    
-    @Override
-    public int getDuration() {
-      return duration;
+    trimDataWindow();
+    frame.commitUpdate();
+    renderMetrics.end(RenderMetrics.Section.DATA_REQUEST, begin);
+    if (pendingRowState != null) {
+      // the restored top row is there now
+      applyRowState(pendingRowState);
+      pendingRowState = null;
     }
-    
-    @Override
-    public Date getComplDate() {
-      final Calendar c = Calendar.getInstance();
-      c.setTime(getStartDate());
-      c.add(Calendar.HOUR, duration);
-      
-      return c.getTime();
+    invalidate();
+
+    // the frame could have moved while loading
+    requestDataWindow();
+  }
+
+  /**
+   * Keeps the loaded window within {@link #MAX_LOADED_FRAMES} around the frame, the tasks of the windows
+   * left behind by scrolling are dropped, so they are loaded again if the frame comes back.
+   */
+  private void trimDataWindow() {
+    final long start = frame.timeline.getStart();
+    final long compl = frame.timeline.getCompl();
+    final long margin = (compl - start)*MAX_LOADED_FRAMES;
+    final long keepFrom = Math.max(loadedFrom, start - margin);
+    final long keepTo = Math.min(loadedTo, compl + margin);
+    if (keepFrom >= keepTo) {
+      // the frame is far away from the window
+      loadedFrom = loadedTo = 0;
+      frame.retainTasks(start, start);
+      return;
     }
-    
-    @Override
-    public int getStartSlot() {
-      final int startSlot = frame.getStartSlot(getStartDate());
-      if (startSlot < 0 && frame.getComplSlot(getStartDate(), duration) >= 0) {
-        return 0;
+
+    loadedFrom = keepFrom;
+    loadedTo = keepTo;
+    frame.retainTasks(keepFrom, keepTo);
+  }
+
+  private void cancelDataWindow() {
+    if (pendingRequest != null) {
+      pendingRequest.cancel();
+      pendingRequest = null;
+    }
+  }
+
+  private ExecutorService getDataExecutor() {
+    if (dataExecutor == null) {
+      dataExecutor = newBackgroundExecutor("GanttChartView data");
+    }
+
+    return dataExecutor;
+  }
+
+  private static ExecutorService newBackgroundExecutor(final String name) {
+    return Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        final Thread thread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+          }
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Owns the critical path on a background thread, the changes are queued there
+   * and the values they have changed are posted back.
+   */
+  private class ScheduleWorker {
+    private final CriticalPath criticalPath = new CriticalPath();
+    private final ExecutorService executor = newBackgroundExecutor("GanttChartView schedule");
+    // the changes queued but not applied yet, the path is only updated after the last of them
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private abstract class Change implements Runnable {
+      protected abstract void apply();
+
+      @Override
+      public void run() {
+        apply();
+        if (queued.decrementAndGet() == 0) {
+          publish(criticalPath.update());
+        }
       }
-      
-      return startSlot;
     }
-    
-    @Override
-    public int getComplSlot() {
-      final int finishSlot = frame.getComplSlot(getStartDate(), duration);
-      if (frame.getStartSlot(getStartDate()) < frame.getHeader().slotsNum && finishSlot >= frame.getHeader().slotsNum) {
-        return frame.getHeader().slotsNum-1;
+
+    public void setTask(final long id, final long start, final long duration) {
+      execute(new Change() {
+        @Override
+        protected void apply() {
+          criticalPath.setTask(id, start, duration);
+        }
+      });
+    }
+
+    public void removeTask(final long id) {
+      execute(new Change() {
+        @Override
+        protected void apply() {
+          criticalPath.removeTask(id);
+        }
+      });
+    }
+
+    public void clearTasks() {
+      execute(new Change() {
+        @Override
+        protected void apply() {
+          criticalPath.clearTasks();
+        }
+      });
+    }
+
+    public void addDependency(final long predecessorId, final long successorId) {
+      execute(new Change() {
+        @Override
+        protected void apply() {
+          criticalPath.addDependency(predecessorId, successorId);
+        }
+      });
+    }
+
+    public void removeDependency(final long predecessorId, final long successorId) {
+      execute(new Change() {
+        @Override
+        protected void apply() {
+          criticalPath.removeDependency(predecessorId, successorId);
+        }
+      });
+    }
+
+    public void clearDependencies() {
+      execute(new Change() {
+        @Override
+        protected void apply() {
+          criticalPath.clearDependencies();
+        }
+      });
+    }
+
+    public void shutdown() {
+      executor.shutdownNow();
+    }
+
+    private void execute(Change change) {
+      queued.incrementAndGet();
+      executor.execute(change);
+    }
+
+    private void publish(final CriticalPath.Delta delta) {
+      if (delta == null) {
+        return;
       }
-      
-      return finishSlot;
+
+      post(new Runnable() {
+        @Override
+        public void run() {
+          if (scheduleWorker == ScheduleWorker.this) {
+            slackTable.apply(delta);
+            invalidate();
+          }
+        }
+      });
     }
-    
+  }
+
+  /**
+   * Builds the frame snapshots on a background thread from its own copy of the tasks, which is fed
+   * by the changes. Only the latest frame asked for is built, so the states the worker hasn't got to
+   * are skipped, and the built snapshot waits for drawing in the second buffer.
+   */
+  private class SnapshotWorker {
+    private final SnapshotBuilder builder = new SnapshotBuilder();
+    private final ExecutorService executor = newBackgroundExecutor("GanttChartView snapshot");
+    // the drawing thread sets the requested viewport under its lock and the worker copies it out,
+    // so the two viewports are reused by every request
+    private final Viewport requested = new Viewport();
+    private boolean requestPending;
+    private final Viewport building = new Viewport();
+    // built but not drawn yet
+    private final AtomicReference<FrameSnapshot> ready = new AtomicReference<FrameSnapshot>();
+    // the buffer given back by drawing
+    private final AtomicReference<FrameSnapshot> spare = new AtomicReference<FrameSnapshot>();
+    private final Runnable build = new Runnable() {
+      @Override
+      public void run() {
+        synchronized (requested) {
+          if (!requestPending) {
+            return;
+          }
+          requestPending = false;
+          building.set(requested);
+        }
+
+        FrameSnapshot snapshot = spare.getAndSet(null);
+        if (snapshot == null) {
+          snapshot = new FrameSnapshot();
+        }
+        builder.build(building, snapshot);
+        final FrameSnapshot skipped = ready.getAndSet(snapshot);
+        if (skipped != null) {
+          // the drawing thread has fallen behind
+          spare.compareAndSet(null, skipped);
+        }
+        postInvalidate();
+      }
+    };
+    // the following are used by the drawing thread only
+    private FrameSnapshot front;
+    private boolean changed = true;
+
+    public void setLevels(ZoomLadder ladder) {
+      final List<ZoomLevel> levels = new ArrayList<ZoomLevel>();
+      for (int i = 0; i < ladder.size(); i++) {
+        levels.add(new ZoomLevel(ladder.get(i)));
+      }
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.setLevels(levels);
+        }
+      });
+    }
+
+    public void setLanePacking(final boolean lanePacking) {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.setLanePacking(lanePacking);
+        }
+      });
+    }
+
+    public void setTask(final int position, final long id, final long start, final long end) {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.setTask(position, id, start, end);
+        }
+      });
+    }
+
+    public void removeTask(final int position) {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.removeTask(position);
+        }
+      });
+    }
+
+    public void setTasks(final long[] ids, final long[] starts, final long[] ends, final int size) {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.setTasks(ids, starts, ends, size);
+        }
+      });
+    }
+
+    public void clearTasks() {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.clearTasks();
+        }
+      });
+    }
+
+    /**
+     * The changes of a batch of the frame are a batch of the worker too, so the worker places the lanes
+     * once by the end of it as the frame does.
+     */
+    public void beginBatch() {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.beginBatch();
+        }
+      });
+    }
+
+    public void commitBatch() {
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          builder.commitBatch();
+        }
+      });
+    }
+
+    /**
+     * Asks for the snapshot of the current frame unless it's been asked for already.
+     */
+    public void request() {
+      final int level = frame.ladder.getCurrentIndex();
+      final FrameHeader header = frame.header;
+      final long start = frame.timeline.getStart();
+      final int slotsNum = frame.getVisibleSlots();
+      final int rowsNum = frame.getVisibleRows();
+      // the worker only reads the requested viewport, so this thread compares it without the lock
+      if (!changed && requested.equals(start, level, header.slotW, slotsNum, frame.scrollX, frame.topTask,
+          rowsNum, header.slotH, frame.scrollY)) {
+        return;
+      }
+
+      changed = false;
+      final boolean pending;
+      synchronized (requested) {
+        // the request the worker hasn't taken yet is replaced
+        requested.set(start, level, header.slotW, slotsNum, frame.scrollX, frame.topTask, rowsNum, header.slotH,
+            frame.scrollY);
+        pending = requestPending;
+        requestPending = true;
+      }
+      if (!pending) {
+        executor.execute(build);
+      }
+    }
+
+    /**
+     * @return the latest built snapshot or null if there is none yet.
+     */
+    public FrameSnapshot acquire() {
+      final FrameSnapshot latest = ready.getAndSet(null);
+      if (latest != null) {
+        if (front != null) {
+          spare.compareAndSet(null, front);
+        }
+        front = latest;
+      }
+      return front;
+    }
+
+    public void shutdown() {
+      executor.shutdownNow();
+    }
+
+    private void execute(Runnable change) {
+      changed = true;
+      executor.execute(change);
+    }
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+
+    if (criticalPathEnabled) {
+      startSchedule();
+    }
+    if (snapshotRendering) {
+      startSnapshots();
+    }
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+
+    cancelDataWindow();
+    removeCallbacks(deferredDataRequest);
+    if (dataExecutor != null) {
+      dataExecutor.shutdown();
+      dataExecutor = null;
+    }
+    stopSchedule();
+    stopSnapshots();
+    saveSnapshot();
+    axisLayers.release();
+    if (frame != null) {
+      frame.tiles.release();
+    }
+    if (snapshotFileExecutor != null) {
+      // the snapshot being written is still written
+      snapshotFileExecutor.shutdown();
+      snapshotFileExecutor = null;
+    }
+  }
+
+  /**
+   * Keeps the tasks and the state of the view in the file, so the next time the view is laid out it shows
+   * them before the callback or the data provider has loaded anything. The snapshot is written when the view
+   * is detached or by {@link #saveSnapshot()}.
+   * <p>
+   * The snapshot is shown before {@link ICallback#onInitComplete(GanttChartView)}, so the callback could
+   * skip setting the start date if {@link #isSnapshotRestored()}, the data request refreshes the tasks anyway.
+   * The data requests made before the snapshot has been drawn are postponed till after the first frame,
+   * so the restored tasks are on the screen before anything is loaded.
+   * 
+   * @param file null turns the snapshot off.
+   */
+  public void setSnapshotFile(File file) {
+    snapshotFile = file;
+  }
+
+  /**
+   * @return true if the view has shown the snapshot of the last run.
+   */
+  public boolean isSnapshotRestored() {
+    return snapshotRestored;
+  }
+
+  /**
+   * Writes the current tasks and the state of the view to the snapshot file in the background,
+   * e.g. when the activity is paused. The adapter rows aren't kept.
+   */
+  public void saveSnapshot() {
+    if (snapshotFile == null || frame == null || frame.isVirtual()) {
+      return;
+    }
+
+    // the copy is taken here, so the tasks could be changed while it's written
+    final TaskStore tasks = copyTasks();
+    final File file = snapshotFile;
+    final long startPeriod = frame.timeline.getStart();
+    final int zoomLevel = frame.ladder.getCurrentIndex();
+    final int topRow = frame.topTask;
+    final long editedTaskId = (frame.editedTask >= 0 ? frame.taskList.get(frame.editedTask).getId() : SnapshotFile.NO_TASK);
+    if (snapshotFileExecutor == null) {
+      snapshotFileExecutor = newBackgroundExecutor("GanttChartView snapshot file");
+    }
+    snapshotFileExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          SnapshotFile.write(file, startPeriod, zoomLevel, topRow, editedTaskId, tasks);
+        } catch (IOException e) {
+          // the previous snapshot is kept, or the next start loads the tasks as usual
+        }
+      }
+    });
+  }
+
+  private TaskStore copyTasks() {
+    final TaskStore tasks = new TaskStore();
+    tasks.ensureCapacity(frame.taskList.size());
+    for (final ITask task : frame.taskList) {
+      tasks.add(task.getId(), task.getName(), task.getStartMillis(), task.getDuration());
+    }
+    return tasks;
+  }
+
+  /**
+   * The tasks and their dependencies kept outside the view, e.g. by
+   * {@code Activity.onRetainNonConfigurationInstance()}, so the recreated view doesn't load them again.
+   * It doesn't refer to the view, so the old view isn't leaked.
+   */
+  public static class RetainedModel {
+    private final TaskStore tasks;
+    private final DependencyGraph dependencies;
+
+    private RetainedModel(TaskStore tasks, DependencyGraph dependencies) {
+      this.tasks = tasks;
+      this.dependencies = dependencies;
+    }
+  }
+
+  /**
+   * @return the model to pass to {@link #restoreModel(RetainedModel)} of the recreated view, or null
+   * if the view has no frame yet or its rows come from an adapter.
+   */
+  public RetainedModel retainModel() {
+    if (frame == null || frame.isVirtual()) {
+      return null;
+    }
+
+    return new RetainedModel(copyTasks(), dependencies);
+  }
+
+  /**
+   * Makes the new view show the tasks of the retained model instead of asking for them, so
+   * {@link ICallback#onInitComplete(GanttChartView)} isn't called. It's called before the view is laid out,
+   * the zoom level, the position and the selection come with the saved instance state.
+   * 
+   * @param model null is ignored.
+   */
+  public void restoreModel(RetainedModel model) {
+    retainedModel = model;
+    if (model != null) {
+      dependencies = model.dependencies;
+    }
+  }
+
+  private void restoreTasks(TaskStore tasks) {
+    frame.beginUpdate();
+    for (int row = 0; row < tasks.size(); row++) {
+      frame.addTask(new TodoTask(tasks.getId(row), tasks.getName(row), tasks.getStart(row), tasks.getDuration(row)));
+    }
+    frame.commitUpdate();
+  }
+
+  /**
+   * The zoom level, the position, the selected and the edited tasks of the view.
+   */
+  public static class SavedState extends BaseSavedState {
+    private static final long NO_TASK = Long.MIN_VALUE;
+
+    private long startPeriod;
+    private int zoomLevel;
+    private int scrollX;
+    private int topTask;
+    private int scrollY;
+    private long selectedTaskId = NO_TASK;
+    private long editedTaskId = NO_TASK;
+
+    public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+      @Override
+      public SavedState createFromParcel(Parcel in) {
+        return new SavedState(in);
+      }
+
+      @Override
+      public SavedState[] newArray(int size) {
+        return new SavedState[size];
+      }
+    };
+
+    private SavedState(Parcelable superState) {
+      super(superState);
+    }
+
+    private SavedState(Parcel in) {
+      super(in);
+      startPeriod = in.readLong();
+      zoomLevel = in.readInt();
+      scrollX = in.readInt();
+      topTask = in.readInt();
+      scrollY = in.readInt();
+      selectedTaskId = in.readLong();
+      editedTaskId = in.readLong();
+    }
+
     @Override
-    public boolean isDependsOn() {
-      return false;
+    public void writeToParcel(Parcel out, int flags) {
+      super.writeToParcel(out, flags);
+      out.writeLong(startPeriod);
+      out.writeInt(zoomLevel);
+      out.writeInt(scrollX);
+      out.writeInt(topTask);
+      out.writeInt(scrollY);
+      out.writeLong(selectedTaskId);
+      out.writeLong(editedTaskId);
+    }
+  }
+
+  @Override
+  protected Parcelable onSaveInstanceState() {
+    final Parcelable superState = super.onSaveInstanceState();
+    if (frame == null) {
+      return (pendingState != null ? pendingState : superState);
+    }
+
+    final SavedState state = new SavedState(superState);
+    state.startPeriod = frame.timeline.getStart();
+    state.zoomLevel = frame.ladder.getCurrentIndex();
+    state.scrollX = frame.scrollX;
+    if (pendingRowState != null) {
+      // the rows haven't been loaded since the restore
+      state.topTask = pendingRowState.topTask;
+      state.scrollY = pendingRowState.scrollY;
+      state.selectedTaskId = pendingRowState.selectedTaskId;
+      state.editedTaskId = pendingRowState.editedTaskId;
+      return state;
+    }
+
+    state.topTask = frame.topTask;
+    state.scrollY = frame.scrollY;
+    if (frame.selectedTask != null) {
+      state.selectedTaskId = frame.selectedTask.getId();
+    }
+    if (frame.editedTask >= 0) {
+      state.editedTaskId = frame.taskList.get(frame.editedTask).getId();
+    }
+    return state;
+  }
+
+  @Override
+  protected void onRestoreInstanceState(Parcelable state) {
+    if (!(state instanceof SavedState)) {
+      super.onRestoreInstanceState(state);
+      return;
+    }
+
+    final SavedState savedState = (SavedState) state;
+    super.onRestoreInstanceState(savedState.getSuperState());
+    if (frame != null) {
+      applyState(savedState);
+      invalidate();
+    } else {
+      // the view is restored before it's laid out
+      pendingState = savedState;
+    }
+  }
+
+  private void applyState(SavedState state) {
+    if (state.zoomLevel >= 0 && state.zoomLevel < zoomLadder.size()) {
+      frame.setZoomLevel(state.zoomLevel);
+    }
+    frame.setStartPeriod(state.startPeriod);
+    frame.scrollBy(state.scrollX, 0);
+    if (dataProvider != null && !frame.isVirtual() && loadedFrom == loadedTo) {
+      // the rows aren't loaded yet, the top row would be clamped to the first one
+      pendingRowState = state;
+      requestDataWindow();
+    } else {
+      applyRowState(state);
+    }
+  }
+
+  private void applyRowState(SavedState state) {
+    frame.setTopTask(state.topTask);
+    frame.scrollBy(0, state.scrollY);
+    if (state.editedTaskId != SavedState.NO_TASK) {
+      frame.setEditedTask(state.editedTaskId);
+    }
+    if (state.selectedTaskId != SavedState.NO_TASK && !frame.isVirtual()) {
+      final int i = frame.layout.indexOf(state.selectedTaskId);
+      if (i >= 0) {
+        frame.setSelectedTask(frame.taskList.get(i));
+      }
+    }
+  }
+
+  /**
+   * Shows the tasks and the state of the snapshot file in the new frame.
+   */
+  private void restoreSnapshot() {
+    final SnapshotFile snapshot;
+    try {
+      snapshot = SnapshotFile.map(snapshotFile);
+    } catch (IOException e) {
+      // there is no snapshot yet or it's of another version
+      return;
+    }
+
+    if (snapshot.getZoomLevel() >= 0 && snapshot.getZoomLevel() < zoomLadder.size()) {
+      frame.setZoomLevel(snapshot.getZoomLevel());
+    }
+    frame.setStartPeriod(snapshot.getStartPeriod());
+    frame.beginUpdate();
+    for (int row = 0; row < snapshot.size(); row++) {
+      frame.addTask(new TodoTask(snapshot.getId(row), snapshot.getName(row), snapshot.getStart(row), snapshot.getDuration(row)));
+    }
+    frame.commitUpdate();
+    if (snapshot.getEditedTaskId() != SnapshotFile.NO_TASK) {
+      frame.setEditedTask(snapshot.getEditedTaskId());
+    }
+    frame.setTopTask(snapshot.getTopRow());
+    snapshotRestored = true;
+    dataRequestsDeferred = true;
+  }
+
+  private void doSelected(ITask task) {
+    if (callback != null && task != null) {
+      callback.onSelect(task);
+    }
+  }
+
+  /**
+   * Makes the view show rows of the adapter instead of the added tasks.
+   * 
+   * @param adapter null turns the view back to the added tasks.
+   */
+  public void setTaskAdapter(ITaskAdapter adapter) {
+    // the loaded windows belong to the other source
+    cancelDataWindow();
+    pendingRowState = null;
+    loadedFrom = loadedTo = 0;
+    frame.setTaskAdapter(adapter);
+    invalidate();
+  }
+
+  /**
+   * Makes the view show the tasks of the store, only the rows around the frame become {@link ITask} objects.
+   * 
+   * @param store null turns the view back to the added tasks.
+   */
+  public void setTaskStore(final TaskStore store) {
+    setTaskAdapter(store == null ? null : new ITaskAdapter() {
+      @Override
+      public int getCount() {
+        return store.size();
+      }
+
+      @Override
+      public long getTaskId(int row) {
+        return store.getId(row);
+      }
+
+      @Override
+      public String getTaskName(int row) {
+        return store.getName(row);
+      }
+
+      @Override
+      public long getTaskStart(int row) {
+        return store.getStart(row);
+      }
+
+      @Override
+      public int getTaskDuration(int row) {
+        return store.getDuration(row);
+      }
+    });
+  }
+
+  /**
+   * Switches between a row per task and lanes of non-overlapping tasks.
+   */
+  public void setLanePacking(boolean lanePacking) {
+    frame.setLanePacking(lanePacking);
+    invalidate();
+  }
+
+  /**
+   * The frame having more tasks than the threshold in a slot is drawn as density of the tasks by slot
+   * instead of the tasks, zooming in to fewer tasks per slot brings the tasks back.
+   * 
+   * @param detailThreshold number of tasks per slot.
+   */
+  public void setDetailThreshold(int detailThreshold) {
+    frame.setDetailThreshold(detailThreshold);
+    invalidate();
+  }
+
+  /**
+   * Makes the view fetch the adapter rows again.
+   */
+  public void notifyDataSetChanged() {
+    if (frame.isVirtual()) {
+      frame.clearTasks();
+      invalidate();
     }
+  }
 
-    @Override
-    public void handleDragEvent(Point delta) {
-      // redirect back to the frame
-      frame.changeStartPeriod((int) Math.signum(delta.x));
+  /**
+   * Adds the task, while refreshing the task having the same id is updated instead. The task is ignored
+   * while the view shows the rows of an adapter.
+   */
+  public void addTodoTask(long id, String name, Date startDate, int duration) {
+    if (frame.isVirtual()) {
+      return;
     }
+    if (frame.isRefreshing()) {
+      frame.putTask(id, name, startDate.getTime(), duration);
+    } else {
+      frame.addTask(new TodoTask(id, name, startDate, duration));
+    }
+  }
 
-    @Override
-    public void draw(int y, Canvas canvas, Paint textPaint) {
-      final Rect rect = new Rect(slotToX(getStartSlot())+1, y+1, slotToX(getComplSlot())+frame.header.slotW-1, y+frame.header.slotH-1);
-      canvas.drawRect(rect, paint);
-      canvas.drawText(name, rect.left, (rect.bottom+rect.top)/2+paint.getTextSize()/2, textPaint);
-      if (this == frame.selectedTask) {
-        canvas.drawRect(rect, selectedPaint);
+  public void addEditedTask(long id, String name, Ptr<Date> startDate, Ptr<Integer> duration) {
+    if (id >= 0 && startDate.isDefined() && duration.isDefined()) {
+      if (frame.isVirtual()) {
+        return;
+      }
+      if (frame.isRefreshing()) {
+        frame.setEditedTask(frame.putTask(id, name, startDate.value.getTime(), duration.value));
+      } else {
+        frame.addTask(new EditedTask(id, name, startDate.value, duration.value));
       }
+    } else {
+      throw new IllegalArgumentException("The task must exist.");
     }
   }
 
-  public class EditedTask extends TodoTask {
-    private Date changedStart;
+  /**
+   * Starts a batch of changes: the tasks added, updated and removed till {@link #commitUpdate()}
+   * are laid out at once and the view is redrawn once. Batches could be nested.
+   */
+  public void beginUpdate() {
+    frame.beginUpdate();
+  }
 
-    public EditedTask(ITask task) {
-      this(task.getId(), task.getName(), task.getStartDate(), task.getDuration());
+  /**
+   * Applies the changes made since {@link #beginUpdate()}.
+   */
+  public void commitUpdate() {
+    if (frame.commitUpdate()) {
+      invalidate();
     }
+  }
 
-    public EditedTask(long id, String name, Date start, int duration) {
-      super(id, name, start, duration);
+  /**
+   * Changes dates of the added task.
+   * 
+   * @return false if there is no such task.
+   */
+  public boolean updateTask(long id, Date startDate, int duration) {
+    final boolean updated = frame.updateTask(id, startDate.getTime(), duration);
+    if (updated && !frame.isUpdating()) {
+      invalidate();
+    }
+    return updated;
+  }
 
-      changedStart = start;
+  /**
+   * @return false if there is no such task.
+   */
+  public boolean removeTask(long id) {
+    final boolean removed = frame.removeTask(id);
+    if (removed && !frame.isUpdating()) {
+      invalidate();
     }
+    return removed;
+  }
 
-    @Override
-    public Date getStartDate() {
-      return changedStart;
+  /**
+   * Makes the successor start after the predecessor is finished, the link is drawn between them.
+   */
+  public void addDependency(long predecessorId, long successorId) {
+    frame.updateDependencySpan(dependencies.add(predecessorId, successorId));
+    if (scheduleWorker != null) {
+      scheduleWorker.addDependency(predecessorId, successorId);
     }
+    invalidate();
+  }
 
-    @Override
-    public void handleDragEvent(Point delta) {
-      final int slot = (int) Math.signum(delta.x);
+  public void removeDependency(long predecessorId, long successorId) {
+    if (dependencies.remove(predecessorId, successorId)) {
+      if (scheduleWorker != null) {
+        scheduleWorker.removeDependency(predecessorId, successorId);
+      }
+      invalidate();
+    }
+  }
 
-      final Calendar c = Calendar.getInstance();
-      c.setTime(getStartDate());
+  public void clearDependencies() {
+    dependencies.clear();
+    if (scheduleWorker != null) {
+      scheduleWorker.clearDependencies();
+    }
+    invalidate();
+  }
 
-      if (slot == +1 && getStartSlot() == 0) {
-        // scroll in first position
-        frame.changeStartPeriod(-slot);
-      }
-      if (slot == -1 && getStartSlot() == frame.header.slotsNum-1) {
-        // scroll in last position
-        frame.changeStartPeriod(-slot);
-      }
-      frame.header.changeToSlots(c, -slot);
-      changedStart = c.getTime();
+  /**
+   * Outlines the tasks of the critical path and shows the float of the others. The path is calculated
+   * in background and it's updated incrementally when the tasks or their dependencies change.
+   */
+  public void setCriticalPathEnabled(boolean enabled) {
+    criticalPathEnabled = enabled;
+    if (enabled) {
+      startSchedule();
+    } else {
+      stopSchedule();
     }
+    invalidate();
+  }
 
-    @Override
-    public void draw(int y, Canvas canvas, Paint textPaint) {
-      final Paint editedPaint = new Paint();
-      editedPaint.setColor(Color.GREEN);
-      final Rect rect = new Rect(slotToX(getStartSlot())+1, y+1, slotToX(getComplSlot())+frame.header.slotW-1, y+frame.header.slotH-1);
-      canvas.drawRect(rect, editedPaint);
-      canvas.drawText(name, rect.left, (rect.bottom+rect.top)/2+paint.getTextSize()/2, textPaint);
-      if (this == frame.selectedTask) {
-        canvas.drawRect(rect, selectedPaint);
+  private void startSchedule() {
+    if (scheduleWorker != null) {
+      return;
+    }
+
+    scheduleWorker = new ScheduleWorker();
+    dependencies.forEach(new IntervalIndex.Visitor() {
+      @Override
+      public boolean visit(int edge) {
+        scheduleWorker.addDependency(dependencies.getPredecessor(edge), dependencies.getSuccessor(edge));
+        return true;
       }
+    });
+    if (frame != null) {
+      frame.scheduleTasks();
     }
   }
 
-  
-  private enum TouchMode {
-    DRAG, ZOOM;
-  };
+  private void stopSchedule() {
+    if (scheduleWorker != null) {
+      scheduleWorker.shutdown();
+      scheduleWorker = null;
+    }
+    slackTable.clear();
+  }
 
-  private static class MotionEventWrapper {
-    private int action;
-    private int x, y;
+  public boolean isSnapshotRendering() {
+    return snapshotRendering;
+  }
 
-    public MotionEventWrapper() {
-      update(-1, 0, 0);
+  /**
+   * Makes a background thread build what the frame shows, i.e. the ruler labels and the task bars
+   * in pixels, and the view only draws the last built snapshot. The snapshots have no dependencies,
+   * float of the tasks and density, so the frame is drawn as usual while there are dependencies,
+   * the critical path is enabled or the frame shows the density, and the adapter rows are drawn
+   * as usual too.
+   */
+  public void setSnapshotRendering(boolean enabled) {
+    snapshotRendering = enabled;
+    if (enabled) {
+      startSnapshots();
+    } else {
+      stopSnapshots();
     }
+    invalidate();
+  }
 
-    public void update(int action, int x, int y) {
-      this.action = action;
-      this.x = x;
-      this.y = y;
+  private void startSnapshots() {
+    if (snapshotWorker != null || frame == null) {
+      // it's started by the layout then
+      return;
     }
 
-    public void update(MotionEvent event) {
-      update(event.getAction(), (int) event.getX(), (int) event.getY());
+    snapshotWorker = new SnapshotWorker();
+    snapshotWorker.setLevels(zoomLadder);
+    snapshotWorker.setLanePacking(frame.layout.isLanePacking());
+    frame.snapshotTasks();
+    if (frame.isUpdating()) {
+      // the rest of the batch goes to the worker as a batch too
+      snapshotWorker.beginBatch();
     }
   }
-  
-  private class TouchHandler {
-    private MotionEvent event;
-    private final MotionEventWrapper prev = new MotionEventWrapper();
-    private float oldDist = 0;
-    private final Point pitchCenter = new Point();
-
-    public void handle(final MotionEvent event) {
-      this.event = event;
 
-      switch (event.getAction() & MotionEvent.ACTION_MASK) {
-      case MotionEvent.ACTION_DOWN: {
-        // initialize it for make delta
-        prev.update(event);
-        break;
-      }
-      case MotionEvent.ACTION_POINTER_DOWN: {
-        oldDist = spacing();
-        calcPitchCenter();
-        break;
-      }
-      case MotionEvent.ACTION_MOVE: {
-        if (getMode() == TouchMode.DRAG) {
-          // clean the zoom functionality
-          calcPitchCenter();
-          // delegate to the time frame
-          if (frame.handleDragEvent(prev.x, prev.y, getDelta())) {
-            prev.update(event);
-          }
-        } else if (getMode() == TouchMode.ZOOM) {
-          // pitch moving
-          final float newDist = spacing();
-          if (Math.abs(oldDist - newDist) > frame.getHeader().slotW) {
-            if (newDist < oldDist) {
-              frame.zoomOut(pitchCenter.x);
-            } else {
-              frame.zoomIn(pitchCenter.x);
-            }
-            
-            oldDist = newDist;
-          }
-        }
-        break;
-      }
-      case MotionEvent.ACTION_UP: {
-        if (prev.action == MotionEvent.ACTION_DOWN) {
-//          frame.handleUpEvent(prev.x, prev.y, getDalta())
-          final Point delta = getDelta();
+  private void stopSnapshots() {
+    if (snapshotWorker != null) {
+      snapshotWorker.shutdown();
+      snapshotWorker = null;
+    }
+  }
 
-          if (Math.abs(delta.x) < frame.getHeader().slotW && Math.abs(delta.y) < frame.getHeader().slotH) {
-            frame.setSelectedTaskByTouch(prev.x, prev.y);
-          }
-        }
-        break;
-      }
-      case MotionEvent.ACTION_CANCEL: {
-        break;
-      }
-      default:
-        break;
-      }
+  private void snapshotTask(int position, ITask task) {
+    if (snapshotWorker != null) {
+      snapshotWorker.setTask(position, task.getId(), task.getStartMillis(), task.getComplMillis());
     }
+  }
 
-    public Point getPitchCenter() {
-      return pitchCenter;
+  /**
+   * @return true if the snapshot has everything the frame shows.
+   */
+  private boolean isSnapshotDrawable() {
+    if (snapshotWorker == null || frame.isVirtual() || scheduleWorker != null || dependencies.size() > 0) {
+      return false;
     }
 
-    public TouchMode getMode() {
-      if (event == null) {
-        return TouchMode.DRAG;
-      }
+    frame.countDensity();
+    return !frame.isAggregated();
+  }
 
-      return (event.getPointerCount() == 2 ? TouchMode.ZOOM : TouchMode.DRAG);
+  private void drawSnapshot(Canvas canvas) {
+    snapshotWorker.request();
+    final FrameSnapshot snapshot = snapshotWorker.acquire();
+    if (snapshot == null) {
+      // the first one is being built
+      return;
     }
 
-    private Point getDelta() {
-      final Point result = new Point();
-      result.x = (int) (prev.x - event.getX()); result.y = (int) (prev.y - event.getY());
-      return result;
+    final Viewport viewport = snapshot.getViewport();
+    final long rulerBegin = renderMetrics.begin();
+    canvas.drawLine(size.left, 0, size.right, 0, rulerPaint);
+    canvas.drawLine(size.left, RULER_H-2, size.right, RULER_H-2, rulerPaint);
+    for (int x = -viewport.scrollX, i = 0; i < snapshot.getLabelsNum(); x += viewport.slotW, i++) {
+      canvas.drawLine(x, RULER_H-14, x, RULER_H-2, rulerPaint);
+      canvas.drawText(snapshot.getGroupText(i), x+2, RULER_H-48, rulerPaint);
+      canvas.drawText(snapshot.getText(i), x+2, RULER_H-14, rulerPaint);
+    }
+    renderMetrics.end(RenderMetrics.Section.RULER, rulerBegin);
+
+    final long tasksBegin = renderMetrics.begin();
+    canvas.save();
+    canvas.clipRect(size.left, RULER_H, size.right, size.bottom);
+    paint.setColor(Color.DKGRAY);
+    for (int x = size.left - viewport.scrollX, i = 0; i < viewport.slotsNum; x += viewport.slotW, i++) {
+      canvas.drawLine(x, RULER_H, x, size.bottom, paint);
     }
 
-    private void calcPitchCenter() {
-      if (event.getPointerCount() > 1) {
-        // midpoint
-        pitchCenter.x = (int) ((event.getX(0) + event.getX(1)) / 2);
-        pitchCenter.y = (int) ((event.getY(0) + event.getY(1)) / 2);
-      } else {
-        pitchCenter.x = -1; pitchCenter.y = -1;
+    paint.setColor(Color.WHITE);
+    for (int i = 0; i < snapshot.getBarsNum(); i++) {
+      // the names come from the tasks, the snapshot could be older than them
+      final int position = snapshot.getPosition(i);
+      if (position >= frame.taskList.size() || position == frame.editedTask
+          || frame.taskList.get(position).getId() != snapshot.getId(i)) {
+        continue;
       }
-    }
 
-    private float spacing() {
-      if (event.getPointerCount() > 1) {
-        final float x = event.getX(0) - event.getX(1);
-        final float y = event.getY(0) - event.getY(1);
-        return FloatMath.sqrt(x*x + y*y);
+      final ITask task = frame.taskList.get(position);
+      taskRect.set(size.left + snapshot.getLeft(i), RULER_H + snapshot.getTop(i),
+          size.left + snapshot.getRight(i), RULER_H + snapshot.getBottom(i));
+      canvas.drawRect(taskRect, paint);
+      canvas.drawText(task.getName(), taskRect.left, (taskRect.bottom+taskRect.top)/2+paint.getTextSize()/2, textPaint);
+      if (task == frame.selectedTask || frame.isInSelection(task)) {
+        canvas.drawRect(taskRect, selectedPaint);
       }
+    }
 
-      return 0;
+    if (frame.editedTask >= 0) {
+      // the edited task follows the finger, so it's drawn by the frame itself
+      final int row = frame.getRowOf(frame.editedTask) - frame.topTask;
+      if (row >= 0 && row < frame.getVisibleRows()) {
+        frame.taskList.get(frame.editedTask).draw(RULER_H + row*frame.header.slotH - frame.scrollY, canvas, textPaint);
+      }
     }
+    canvas.restore();
+    renderMetrics.end(RenderMetrics.Section.TASKS, tasksBegin);
   }
 
-  private final TouchHandler touchHandler = new TouchHandler();
-  private final Paint paint = new Paint();
-  private final Paint selectedPaint = new Paint();
+  private void scheduleTask(ITask task) {
+    if (scheduleWorker != null) {
+      scheduleWorker.setTask(task.getId(), task.getStartMillis(), task.getComplMillis() - task.getStartMillis());
+    }
+  }
 
+  /**
+   * @return the moves of the tasks by the user, the host app could take them as a batch
+   * by {@link EditJournal#replay(EditJournal.Target)} instead of following every move.
+   */
+  public EditJournal getEditJournal() {
+    return editJournal;
+  }
 
-  public GanttChartView(Context context, AttributeSet attrs) {
-    super(context, attrs);
+  /**
+   * Moves the tasks of the last action back, the tasks are laid out and the view is redrawn once.
+   * 
+   * @return false if there is nothing to undo.
+   */
+  public boolean undo() {
+    frame.beginUpdate();
+    final boolean undone = editJournal.undo(journalTarget);
+    frame.commitUpdate();
+    invalidate();
+    return undone;
+  }
 
-    selectedPaint.setColor(Color.GREEN);
-    selectedPaint.setStyle(Style.STROKE);
-    selectedPaint.setStrokeWidth(2);
+  /**
+   * Moves the tasks of the last undone action again.
+   * 
+   * @return false if there is nothing to redo.
+   */
+  public boolean redo() {
+    frame.beginUpdate();
+    final boolean redone = editJournal.redo(journalTarget);
+    frame.commitUpdate();
+    invalidate();
+    return redone;
   }
 
-  public void setCallback(ICallback callback) {
-    this.callback = callback;
+  public boolean isMultiSelection() {
+    return multiSelection;
   }
 
-  private void doInitComplete() {
-    if (callback != null) {
-      callback.onInitComplete(this);
+  /**
+   * Makes the touches select many tasks: a tap adds the task to the selection or removes it from there,
+   * dragging a selected task moves all the selected tasks together, and a long press elsewhere starts
+   * the lasso selecting the tasks under it, while a plain drag still scrolls the frame.
+   * Adapter rows can't be selected together.
+   */
+  public void setMultiSelection(boolean multiSelection) {
+    this.multiSelection = multiSelection;
+    if (!multiSelection && frame != null) {
+      frame.clearSelection();
     }
+    invalidate();
   }
 
-  private boolean doDataRequest() {
-    frame.taskList.clear();
-
-    if (callback != null) {
-      callback.onDataRequest(this);
-      return true;
-    } else {
-      return false;
-    }
+  /**
+   * @return the tasks selected together in the order of the task list.
+   */
+  public List<ITask> getSelectedTasks() {
+    return frame.getSelection();
   }
 
-  private void doSelected(ITask task) {
-    if (callback != null && task != null) {
-      callback.onSelect(task);
-    }
+  public void clearSelection() {
+    frame.clearSelection();
+    invalidate();
   }
 
-  public void addTodoTask(long id, String name, Date startDate, int duration) {
-    frame.addTask(new TodoTask(id, name, startDate, duration));
+  /**
+   * Adds the tasks intersecting the dates in the rows to the selection.
+   * 
+   * @param toRow the last row, inclusive.
+   */
+  public void selectTasks(Date from, Date to, int fromRow, int toRow) {
+    frame.selectRange(from.getTime(), to.getTime(), fromRow, toRow);
+    invalidate();
   }
 
-  public void addEditedTask(long id, String name, Ptr<Date> startDate, Ptr<Integer> duration) {
-    if (id >= 0 && startDate.isDefined() && duration.isDefined()) {
-      frame.addTask(new EditedTask(id, name, startDate.value, duration.value));
-    } else {
-      throw new IllegalArgumentException("The task must exist.");
-    }
+  /**
+   * Shifts the selected tasks by the slots of the current zoom level, the tasks are laid out once
+   * and the view is redrawn once.
+   */
+  public void moveSelectedTasks(int slots) {
+    frame.moveSelection(slots);
+    invalidate();
   }
 
   public void setEditedTask(ITask task) {
     frame.setEditedTask(task);
 
-    invalidate();
+    if (!frame.isUpdating()) {
+      invalidate();
+    }
   }
 
   public void setMetrics(DisplayMetrics metrics) {
@@ -770,7 +4019,12 @@ public class GanttChartView extends View {
   }
 
   public void newTask() {
-    final TodoTask newTask = new TodoTask(-1, "New", new Date(), 1);
+    if (frame.isVirtual()) {
+      // the adapter has its own tasks
+      return;
+    }
+
+    final TodoTask newTask = new TodoTask(provisionalId--, "New", new Date(), 1);
     frame.addTask(newTask);
     frame.setStartPeriod(newTask.getStartDate());
     frame.setSelectedTask(newTask);
@@ -786,57 +4040,275 @@ public class GanttChartView extends View {
     invalidate();
   }
 
+  public ZoomLadder getZoomLadder() {
+    return zoomLadder;
+  }
+
+  /**
+   * Sets the levels zooming goes through, the frame starts again with the initial one.
+   */
+  public void setZoomLadder(ZoomLadder zoomLadder) {
+    if (zoomLadder.size() == 0) {
+      throw new IllegalArgumentException("The zoom ladder has no levels.");
+    }
+
+    this.zoomLadder = zoomLadder;
+    if (snapshotWorker != null) {
+      snapshotWorker.setLevels(zoomLadder);
+    }
+    if (frame != null) {
+      frame.setZoomLadder(zoomLadder);
+      doDataRequest();
+      invalidate();
+    }
+  }
+
   @Override
   protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 // FIXME
-    setMeasuredDimension(480/*metrics.widthPixels*/, tasksNum*ROW_H+RULER_H);
+    setMeasuredDimension(480/*metrics.widthPixels*/, resolveSize(DEFAULT_TASKS_NUM*ROW_H+RULER_H, heightMeasureSpec));
   }
 
   @Override
   protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
     super.onLayout(changed, left, top, right, bottom);
 
+    final boolean resized = (size == null || size.width() != right - left || size.height() != bottom - top);
     size = new Rect(left, top, right, bottom);
-    // the time frame component depends on physical size
+    tasksNum = Math.max(1, (bottom - top - RULER_H)/ROW_H);
+    if (frame != null) {
+      // the tasks and the position are kept, only the geometry depends on the size
+      if (resized) {
+        frame.resize();
+      }
+      return;
+    }
+
     frame = new TimeFrame();
-    doInitComplete();
+    if (snapshotRendering) {
+      startSnapshots();
+    }
+    if (retainedModel != null) {
+      // the view has been recreated, its tasks are already here
+      restoreTasks(retainedModel.tasks);
+      retainedModel = null;
+    } else {
+      if (snapshotFile != null && !snapshotRestored) {
+        // the first frame shows the last run while the tasks are loaded
+        restoreSnapshot();
+      }
+      doInitComplete();
+    }
+    if (pendingState != null) {
+      applyState(pendingState);
+      pendingState = null;
+    }
+  }
+
+  public boolean isLayeredRendering() {
+    return layeredRendering;
+  }
+
+  /**
+   * Draws the view in layers: the ruler and the grid of the slots are cached in bitmaps and drawn again
+   * only when the time axis changes, the bars come from the tiles, the links and the edited task are
+   * drawn over them, and the selection, the lasso and the pitch circle over everything. A touch invalidates
+   * only the layers it has changed where the view is drawn in software. The idle view is kept
+   * in a hardware layer where there are layers (Honeycomb and later), the layer is dropped while the frame
+   * moves under the finger or flings, since it would be rendered again on every frame.
+   */
+  public void setLayeredRendering(boolean layeredRendering) {
+    this.layeredRendering = layeredRendering;
+    if (!layeredRendering) {
+      axisLayers.release();
+    }
+    updateLayerType();
+    invalidate();
+  }
+
+  /**
+   * @return the frames drawn and the invalidations by the touches, and the histograms of the hot paths
+   * if the metrics are enabled.
+   */
+  public RenderMetrics getRenderMetrics() {
+    return renderMetrics;
+  }
+
+  /**
+   * Records the time of drawing, touch handling, relabeling and data requests, the recording costs
+   * a couple of {@link System#nanoTime()} calls per section.
+   */
+  public void setMetricsEnabled(boolean enabled) {
+    renderMetrics.setEnabled(enabled);
+  }
+
+  /**
+   * Enables the metrics and reports them to the listener about once a second while the view is drawn,
+   * null disables them.
+   */
+  public void setMetricsListener(RenderMetrics.Listener listener) {
+    renderMetrics.setListener(listener);
+    renderMetrics.setEnabled(listener != null);
+  }
+
+  private void updateLayerType() {
+    final boolean idle = !touchHandler.isTouching() && !flinging;
+    setLayerTypeCompat(layeredRendering && idle ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE);
+  }
+
+  private void setLayerTypeCompat(int layerType) {
+    if (this.layerType == layerType) {
+      return;
+    }
+    this.layerType = layerType;
+    try {
+      if (setLayerType == null) {
+        setLayerType = View.class.getMethod("setLayerType", int.class, Paint.class);
+      }
+      setLayerType.invoke(this, layerType, null);
+    } catch (Exception e) {
+      // there are no layers before Honeycomb, the view is drawn directly
+    }
   }
 
   @Override
   protected void onDraw(Canvas canvas) {
-    frame.header.drawRuler(canvas);
-    frame.drawTimeSlots(canvas);
-    frame.drawTasks(canvas);
+    final long begin = System.nanoTime();
+    if (isSnapshotDrawable()) {
+      // the snapshot has both the ruler and the bars, nothing is drawn live but the edited task
+      drawSnapshot(canvas);
+    } else {
+      drawLayers(canvas);
+    }
+    if (!lassoRect.isEmpty()) {
+      canvas.drawRect(lassoRect, selectedPaint);
+    }
     drawPitchCircle(canvas);
+    renderMetrics.recordFrame(System.nanoTime() - begin);
+
+    if (touchHandler.onFrameDone()) {
+      post(pendingMoveApplier);
+    }
+    if (dataRequestsDeferred) {
+      // the snapshot is on the screen, the fresh tasks are requested after this frame
+      dataRequestsDeferred = false;
+      if (dataRequestDeferred) {
+        dataRequestDeferred = false;
+        post(deferredDataRequest);
+      }
+    }
+  }
+
+  private void drawLayers(Canvas canvas) {
+    // the layers out of the invalidated region aren't drawn
+    if (!layeredRendering || !canvas.quickReject(size.left, 0, size.right, RULER_H, Canvas.EdgeType.BW)) {
+      final long rulerBegin = renderMetrics.begin();
+      if (layeredRendering) {
+        axisLayers.drawRuler(canvas);
+      } else {
+        frame.header.drawRuler(canvas);
+      }
+      renderMetrics.end(RenderMetrics.Section.RULER, rulerBegin);
+    }
+    if (!layeredRendering || !canvas.quickReject(size.left, RULER_H, size.right, size.bottom, Canvas.EdgeType.BW)) {
+      final long slotsBegin = renderMetrics.begin();
+      if (layeredRendering) {
+        axisLayers.drawGrid(canvas);
+      } else {
+        frame.drawGrid(canvas);
+      }
+      frame.drawTimeSlots(canvas);
+      renderMetrics.end(RenderMetrics.Section.TIME_SLOTS, slotsBegin);
+
+      final long tasksBegin = renderMetrics.begin();
+      frame.drawTasks(canvas);
+      renderMetrics.end(RenderMetrics.Section.TASKS, tasksBegin);
+    }
   }
 
   private void drawPitchCircle(Canvas canvas) {
     if (touchHandler.getMode() == TouchMode.ZOOM) {
-      final Paint paint = new Paint();
-      paint.setStyle(Style.STROKE);
-      paint.setColor(Color.DKGRAY);
-      canvas.drawCircle(touchHandler.getPitchCenter().x, touchHandler.getPitchCenter().y, touchHandler.spacing()/2, paint);
+      canvas.drawCircle(touchHandler.getPitchCenter().x, touchHandler.getPitchCenter().y, touchHandler.spacing()/2, pitchPaint);
     }
   }
 
   @Override
   public boolean onTouchEvent(MotionEvent e) {
-    touchHandler.handle(e);
-    invalidate();
+    applyTouch(e);
 
     return true; // must be consumed to work in a pager fragment context
   }
 
+  /**
+   * Applies the touch, or the coalesced move if there is no event, and invalidates what it has changed.
+   */
+  private void applyTouch(MotionEvent e) {
+    if (layeredRendering) {
+      touchedState.capture();
+    }
+    final long begin = renderMetrics.begin();
+    if (e != null) {
+      touchHandler.handle(e);
+    } else {
+      touchHandler.applyPendingMove();
+    }
+    renderMetrics.end(RenderMetrics.Section.TOUCH, begin);
+    if (e != null) {
+      updateLayerType();
+    }
+
+    if (touchHandler.hasPendingMove()) {
+      // the move waits for the frame being drawn
+      return;
+    }
+    if (!layeredRendering) {
+      renderMetrics.recordFull();
+      invalidate();
+    } else if (!touchedState.invalidateChanges()) {
+      // there is no frame to wait for
+      touchHandler.onFrameDone();
+    }
+  }
+
+  private void fling(int velocityX, int velocityY) {
+    flingX = 0;
+    flingY = 0;
+    scroller.fling(0, 0, velocityX, velocityY, Integer.MIN_VALUE/2, Integer.MAX_VALUE/2, Integer.MIN_VALUE/2, Integer.MAX_VALUE/2);
+    flinging = true;
+    ViewCompat.postInvalidateOnAnimation(this);
+  }
+
+  @Override
+  public void computeScroll() {
+    if (scroller.computeScrollOffset()) {
+      final int x = scroller.getCurrX();
+      final int y = scroller.getCurrY();
+      final boolean moved = frame.scrollBy(x - flingX, y - flingY);
+      if (!moved && (x != flingX || y != flingY)) {
+        // the frame has reached its limits
+        scroller.forceFinished(true);
+      }
+      flingX = x;
+      flingY = y;
+
+      // the next step is synchronized with the next frame
+      ViewCompat.postInvalidateOnAnimation(this);
+    } else if (flinging) {
+      flinging = false;
+      post(layerTypeUpdater);
+    }
+  }
+
   private int xToSlot(int x) {
-    return x/frame.getHeader().slotW;
+    return (x+frame.scrollX)/frame.getHeader().slotW;
   }
 
   private int yToRow(int y) {
-    return (y-RULER_H)/frame.getHeader().slotH;
+    return (y-RULER_H+frame.scrollY)/frame.getHeader().slotH;
   }
 
   private int slotToX(int slot) {
-    return size.left + slot*frame.getHeader().slotW;
+    return size.left + slot*frame.getHeader().slotW - frame.scrollX;
   }
 
 }
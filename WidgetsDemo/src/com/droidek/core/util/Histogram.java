@@ -0,0 +1,103 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Counts non-negative values, e.g. nanos, by buckets of a fixed relative width, so recording is O(1)
+ * without allocation and a percentile is found by a walk over the buckets.
+ * <p>
+ * Every power of two is split into {@link #SUB_BUCKETS} buckets, i.e. a percentile is within
+ * 1/{@link #SUB_BUCKETS} of the recorded value.
+ * 
+ * @author agent
+ *
+ */
+public class Histogram {
+  private static final int SUB_BITS = 4;
+  public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  private final long[] counts = new long[(64 - SUB_BITS)*SUB_BUCKETS];
+  private long count;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max;
+
+  public void clear() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+
+    counts[indexOf(value)]++;
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMin() {
+    return (count > 0 ? min : 0);
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public long getMean() {
+    return (count > 0 ? sum/count : 0);
+  }
+
+  /**
+   * @param percentile from 0 to 100, e.g. 50 for the median.
+   * @return the greatest value of the bucket the percentile falls into, but not greater than the max.
+   */
+  public long getPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(percentile/100*count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(max, highestOf(i));
+      }
+    }
+    return max;
+  }
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    // the highest bits of the value select the bucket of its power of two
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return shift*SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  private static long highestOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+
+    final int shift = index/SUB_BUCKETS - 1;
+    final long sub = index - shift*SUB_BUCKETS;
+    return ((sub + 1) << shift) - 1;
+  }
+}
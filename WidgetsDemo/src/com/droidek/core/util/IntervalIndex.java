@@ -0,0 +1,450 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Static interval tree over half-open <code>[start, end)</code> intervals with an int payload.
+ * <p>
+ * Intervals are kept in arrays sorted by start, the tree is implicit (the middle of a range is its root)
+ * and every root keeps the max end of its range, so an intersection query costs O(log n + k).
+ * The shape of the tree depends on the capacity of the arrays only, so a single addition, change or removal
+ * of the built index moves the intervals within the sorted arrays and refreshes the max ends of the moved
+ * range only. The changes of a batch, or of an index which has been cleared or outgrown its arrays,
+ * only mark it as dirty, and it's rebuilt once on the next query.
+ * 
+ * @author agent
+ *
+ */
+public class IntervalIndex {
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * Receives payloads of the found intervals.
+   */
+  public interface Visitor {
+    /**
+     * @return false to stop the query.
+     */
+    boolean visit(int value);
+  }
+
+  private long[] starts = new long[INITIAL_CAPACITY];
+  private long[] ends = new long[INITIAL_CAPACITY];
+  private int[] values = new int[INITIAL_CAPACITY];
+  private int size;
+
+  // sorted copy the queries work on
+  private long[] sortedStarts = new long[0];
+  private long[] sortedEnds = new long[0];
+  // ends by themselves for counting
+  private long[] sortedEndsOnly = new long[0];
+  private long[] maxEnds = new long[0];
+  private int[] sortedValues = new int[0];
+  private int[] order = new int[0];
+  // sorted index by position
+  private int[] ranks = new int[0];
+  private int[] buffer = new int[0];
+  private boolean dirty;
+  private boolean batch;
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    size = 0;
+    dirty = true;
+  }
+
+  /**
+   * Defers the changes till the first query after {@link #endBatch()}, the index is rebuilt at once then.
+   */
+  public void beginBatch() {
+    batch = true;
+  }
+
+  public void endBatch() {
+    batch = false;
+  }
+
+  /**
+   * @return position of the interval which could be passed to {@link #set(int, long, long)}.
+   */
+  public int add(long start, long end, int value) {
+    if (size == starts.length) {
+      final int capacity = size*2;
+      starts = copyOf(starts, capacity);
+      ends = copyOf(ends, capacity);
+      values = copyOf(values, capacity);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    values[size] = value;
+    final int position = size++;
+    if (batch || size > sortedStarts.length) {
+      dirty = true;
+    } else if (!dirty) {
+      insert(position);
+    }
+
+    return position;
+  }
+
+  public long getStart(int position) {
+    return starts[position];
+  }
+
+  public long getEnd(int position) {
+    return ends[position];
+  }
+
+  public void set(int position, long start, long end) {
+    if (starts[position] != start || ends[position] != end) {
+      final long oldEnd = ends[position];
+      starts[position] = start;
+      ends[position] = end;
+      if (batch) {
+        dirty = true;
+      } else if (!dirty) {
+        move(position, oldEnd);
+      }
+    }
+  }
+
+  /**
+   * Removes the interval, the intervals behind it move one position down and the values greater than
+   * its value are decremented, so the values which are the positions stay the positions. The built index
+   * drops the interval from the sorted arrays in place, i.e. in O(n) without sorting again.
+   */
+  public void remove(int position) {
+    final int value = values[position];
+    final long end = ends[position];
+    final int last = size-1;
+    System.arraycopy(starts, position+1, starts, position, last-position);
+    System.arraycopy(ends, position+1, ends, position, last-position);
+    System.arraycopy(values, position+1, values, position, last-position);
+    decrementAbove(values, last, value);
+    if (batch) {
+      dirty = true;
+    }
+    if (dirty) {
+      size = last;
+      return;
+    }
+
+    final int rank = ranks[position];
+    System.arraycopy(sortedStarts, rank+1, sortedStarts, rank, last-rank);
+    System.arraycopy(sortedEnds, rank+1, sortedEnds, rank, last-rank);
+    System.arraycopy(sortedValues, rank+1, sortedValues, rank, last-rank);
+    System.arraycopy(order, rank+1, order, rank, last-rank);
+    sortedStarts[last] = Long.MAX_VALUE;
+    sortedEnds[last] = Long.MIN_VALUE;
+    decrementAbove(sortedValues, last, value);
+    decrementAbove(order, last, position);
+    updateRanks(0, last);
+
+    final int j = lowerBound(sortedEndsOnly, size, end);
+    System.arraycopy(sortedEndsOnly, j+1, sortedEndsOnly, j, last-j);
+    size = last;
+
+    refreshMaxEnds(0, sortedStarts.length, rank, last);
+  }
+
+  private static void decrementAbove(int[] array, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (array[i] > value) {
+        array[i]--;
+      }
+    }
+  }
+
+  /**
+   * Visits the intervals intersecting <code>[from, to)</code> in the order of their starts.
+   * 
+   * @return false if the visitor has stopped the query.
+   */
+  public boolean query(long from, long to, Visitor visitor) {
+    build();
+
+    // the free part of the arrays is in the tree too, but it's never visited
+    return query(0, sortedStarts.length, from, to, visitor);
+  }
+
+  /**
+   * Counts the intervals intersecting <code>[from, to)</code> in O(log n) by the sorted starts and ends,
+   * i.e. all of them except ones starting at or after <code>to</code> and ones ending at or before <code>from</code>.
+   */
+  public int count(long from, long to) {
+    build();
+
+    if (from >= to) {
+      return 0;
+    }
+    return lowerBound(sortedStarts, size, to) - upperBound(sortedEndsOnly, size, from);
+  }
+
+  /**
+   * @return number of the values less than the key among the first ones.
+   */
+  private static int lowerBound(long[] values, int hi, long key) {
+    int lo = 0;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (values[mid] < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * @return number of the values less or equal to the key among the first ones.
+   */
+  private static int upperBound(long[] values, int hi, long key) {
+    int lo = 0;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (values[mid] <= key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private boolean query(int lo, int hi, long from, long to, Visitor visitor) {
+    if (lo >= hi) {
+      return true;
+    }
+
+    final int mid = (lo + hi) >>> 1;
+    if (maxEnds[mid] <= from) {
+      // nothing in the range reaches the window
+      return true;
+    }
+    if (!query(lo, mid, from, to, visitor)) {
+      return false;
+    }
+    if (sortedStarts[mid] >= to) {
+      // the root and its right range start behind the window
+      return true;
+    }
+    if (sortedEnds[mid] > from && !visitor.visit(sortedValues[mid])) {
+      return false;
+    }
+
+    return query(mid + 1, hi, from, to, visitor);
+  }
+
+  private void build() {
+    if (!dirty) {
+      return;
+    }
+
+    if (sortedStarts.length < size) {
+      sortedStarts = new long[starts.length];
+      sortedEnds = new long[starts.length];
+      sortedEndsOnly = new long[starts.length];
+      maxEnds = new long[starts.length];
+      sortedValues = new int[starts.length];
+      order = new int[starts.length];
+      ranks = new int[starts.length];
+      buffer = new int[starts.length];
+    }
+
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    sortByStart(0, size);
+    for (int i = 0; i < size; i++) {
+      sortedStarts[i] = starts[order[i]];
+      sortedEnds[i] = ends[order[i]];
+      sortedValues[i] = values[order[i]];
+      ranks[order[i]] = i;
+    }
+    // the free part starts behind any window and ends before it
+    Arrays.fill(sortedStarts, size, sortedStarts.length, Long.MAX_VALUE);
+    Arrays.fill(sortedEnds, size, sortedEnds.length, Long.MIN_VALUE);
+    buildMaxEnds(0, sortedStarts.length);
+    System.arraycopy(ends, 0, sortedEndsOnly, 0, size);
+    Arrays.sort(sortedEndsOnly, 0, size);
+
+    dirty = false;
+  }
+
+  /**
+   * Puts the interval added last to the built index, it goes after the intervals having the same start
+   * as its position is the greatest one.
+   */
+  private void insert(int position) {
+    final int last = size-1;
+    final int to = upperBound(sortedStarts, last, starts[position]);
+    System.arraycopy(sortedStarts, to, sortedStarts, to+1, last-to);
+    System.arraycopy(sortedEnds, to, sortedEnds, to+1, last-to);
+    System.arraycopy(sortedValues, to, sortedValues, to+1, last-to);
+    System.arraycopy(order, to, order, to+1, last-to);
+    placeAt(to, position);
+    updateRanks(to, size);
+
+    final int j = upperBound(sortedEndsOnly, last, ends[position]);
+    System.arraycopy(sortedEndsOnly, j, sortedEndsOnly, j+1, last-j);
+    sortedEndsOnly[j] = ends[position];
+
+    refreshMaxEnds(0, sortedStarts.length, to, last);
+  }
+
+  /**
+   * Moves the changed interval to its place in the sorted arrays, the intervals between its old
+   * and new places are shifted by one.
+   */
+  private void move(int position, long oldEnd) {
+    final long start = starts[position];
+    final int from = ranks[position];
+    int to = from;
+    if (from > 0 && compare(from-1, start, position) > 0) {
+      to = firstGreater(0, from, start, position);
+      System.arraycopy(sortedStarts, to, sortedStarts, to+1, from-to);
+      System.arraycopy(sortedEnds, to, sortedEnds, to+1, from-to);
+      System.arraycopy(sortedValues, to, sortedValues, to+1, from-to);
+      System.arraycopy(order, to, order, to+1, from-to);
+    } else if (from+1 < size && compare(from+1, start, position) < 0) {
+      to = firstGreater(from+1, size, start, position) - 1;
+      System.arraycopy(sortedStarts, from+1, sortedStarts, from, to-from);
+      System.arraycopy(sortedEnds, from+1, sortedEnds, from, to-from);
+      System.arraycopy(sortedValues, from+1, sortedValues, from, to-from);
+      System.arraycopy(order, from+1, order, from, to-from);
+    }
+    placeAt(to, position);
+    final int lo = Math.min(from, to);
+    final int hi = Math.max(from, to);
+    updateRanks(lo, hi+1);
+
+    replaceEnd(oldEnd, ends[position]);
+    refreshMaxEnds(0, sortedStarts.length, lo, hi);
+  }
+
+  private void placeAt(int i, int position) {
+    sortedStarts[i] = starts[position];
+    sortedEnds[i] = ends[position];
+    sortedValues[i] = values[position];
+    order[i] = position;
+  }
+
+  private void updateRanks(int from, int to) {
+    for (int i = from; i < to; i++) {
+      ranks[order[i]] = i;
+    }
+  }
+
+  /**
+   * Compares the sorted interval to the key, the intervals are ordered by their starts and then by their positions
+   * as the stable sort of the rebuild does.
+   */
+  private int compare(int i, long start, int position) {
+    if (sortedStarts[i] != start) {
+      return (sortedStarts[i] < start ? -1 : 1);
+    }
+    return (order[i] < position ? -1 : (order[i] > position ? 1 : 0));
+  }
+
+  /**
+   * @return the first sorted index in [lo, hi) greater than the key, or hi.
+   */
+  private int firstGreater(int lo, int hi, long start, int position) {
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (compare(mid, start, position) <= 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private void replaceEnd(long oldEnd, long newEnd) {
+    final int i = lowerBound(sortedEndsOnly, size, oldEnd);
+    if (newEnd < oldEnd) {
+      final int j = lowerBound(sortedEndsOnly, i, newEnd);
+      System.arraycopy(sortedEndsOnly, j, sortedEndsOnly, j+1, i-j);
+      sortedEndsOnly[j] = newEnd;
+    } else if (newEnd > oldEnd) {
+      final int j = lowerBound(sortedEndsOnly, size, newEnd) - 1;
+      System.arraycopy(sortedEndsOnly, i+1, sortedEndsOnly, i, j-i);
+      sortedEndsOnly[j] = newEnd;
+    }
+  }
+
+  /**
+   * Recomputes the max ends of the roots whose ranges have the changed sorted indices [from, to].
+   */
+  private long refreshMaxEnds(int lo, int hi, int from, int to) {
+    if (lo >= hi) {
+      return Long.MIN_VALUE;
+    }
+
+    final int mid = (lo + hi) >>> 1;
+    if (hi <= from || lo > to) {
+      return maxEnds[mid];
+    }
+    final long max = Math.max(sortedEnds[mid], Math.max(refreshMaxEnds(lo, mid, from, to), refreshMaxEnds(mid + 1, hi, from, to)));
+    maxEnds[mid] = max;
+
+    return max;
+  }
+
+  private long buildMaxEnds(int lo, int hi) {
+    if (lo >= hi) {
+      return Long.MIN_VALUE;
+    }
+
+    final int mid = (lo + hi) >>> 1;
+    final long max = Math.max(sortedEnds[mid], Math.max(buildMaxEnds(lo, mid), buildMaxEnds(mid + 1, hi)));
+    maxEnds[mid] = max;
+
+    return max;
+  }
+
+  /**
+   * Stable merge sort of the order permutation by interval starts.
+   */
+  private void sortByStart(int lo, int hi) {
+    if (hi - lo < 2) {
+      return;
+    }
+
+    final int mid = (lo + hi) >>> 1;
+    sortByStart(lo, mid);
+    sortByStart(mid, hi);
+    if (starts[order[mid - 1]] <= starts[order[mid]]) {
+      return;
+    }
+
+    System.arraycopy(order, lo, buffer, lo, hi - lo);
+    for (int i = lo, l = lo, r = mid; i < hi; i++) {
+      if (r >= hi || (l < mid && starts[buffer[l]] <= starts[buffer[r]])) {
+        order[i] = buffer[l++];
+      } else {
+        order[i] = buffer[r++];
+      }
+    }
+  }
+
+  private static long[] copyOf(long[] array, int length) {
+    final long[] result = new long[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  private static int[] copyOf(int[] array, int length) {
+    final int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to int values without boxing.
+ * 
+ * @author agent
+ *
+ */
+public class LongIntHashMap {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] keys;
+  private int[] values;
+  private boolean[] used;
+  private int size;
+
+  public LongIntHashMap() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(used, false);
+      size = 0;
+    }
+  }
+
+  public boolean containsKey(long key) {
+    return used[indexOf(key)];
+  }
+
+  /**
+   * @return value mapped to the key or <code>missing</code>.
+   */
+  public int get(long key, int missing) {
+    final int i = indexOf(key);
+    return (used[i] ? values[i] : missing);
+  }
+
+  public void put(long key, int value) {
+    int i = indexOf(key);
+    if (!used[i]) {
+      if ((size+1)*4 > keys.length*3) {
+        rehash(keys.length*2);
+        i = indexOf(key);
+      }
+      used[i] = true;
+      keys[i] = key;
+      size++;
+    }
+    values[i] = value;
+  }
+
+  public void remove(long key) {
+    int i = indexOf(key);
+    if (!used[i]) {
+      return;
+    }
+
+    used[i] = false;
+    size--;
+    // shift back the following entries of the cluster
+    final int mask = keys.length-1;
+    for (int j = (i+1) & mask; used[j]; j = (j+1) & mask) {
+      final int home = hash(keys[j]) & mask;
+      if ((j > i && (home <= i || home > j)) || (j < i && (home <= i && home > j))) {
+        keys[i] = keys[j];
+        values[i] = values[j];
+        used[i] = true;
+        used[j] = false;
+        i = j;
+      }
+    }
+  }
+
+  /**
+   * Decrements the values greater than the value, e.g. the values are positions and the position is gone.
+   */
+  public void decrementValuesAbove(int value) {
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i] && values[i] > value) {
+        values[i]--;
+      }
+    }
+  }
+
+  private int indexOf(long key) {
+    final int mask = keys.length-1;
+    int i = hash(key) & mask;
+    while (used[i] && keys[i] != key) {
+      i = (i+1) & mask;
+    }
+    return i;
+  }
+
+  private void rehash(int capacity) {
+    final long[] oldKeys = keys;
+    final int[] oldValues = values;
+    final boolean[] oldUsed = used;
+
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        final int j = indexOf(oldKeys[i]);
+        used[j] = true;
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    used = new boolean[capacity];
+  }
+
+  private static int hash(long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,232 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the cases of a benchmark the way JMH does: each case is run by warmup iterations, which are dropped,
+ * then by measurement iterations of a fixed time, and every fork of the benchmark is a new JVM, so the cases
+ * of a fork don't share the profile of the JIT with the other forks. The score of a case is the mean time
+ * of an operation over the measurement iterations of all the forks together with its standard deviation.
+ * <p>
+ * The options of the harness go before the parameters of the benchmark:
+ * <pre>
+ * -f forks  -wi warmup iterations  -i measurement iterations  -w warmup millis  -r measurement millis
+ * </pre>
+ * With no forks the cases are run by the JVM of the benchmark.
+ *
+ * @author agent
+ *
+ */
+public class Harness {
+  private static final String FORK_PROPERTY = "harness.fork";
+  // a fork reports the scores of a case by a line starting with it, the rest of its output is printed as is
+  private static final String RESULT_PREFIX = "#result";
+
+  public abstract static class Case {
+    private final String name;
+
+    public Case(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Called before each iteration, e.g. to collect something besides the time of the measurement iterations.
+     */
+    protected void startIteration(boolean warmup) {
+    }
+
+    /**
+     * @return any value depending on the work done.
+     */
+    protected abstract long run(int i);
+  }
+
+  private final Class<?> benchmark;
+  private final String[] args;
+  private final String[] params;
+  private final boolean forked = (System.getProperty(FORK_PROPERTY) != null);
+  private int forks = 2;
+  private int warmupIterations = 5;
+  private int iterations = 5;
+  private long warmupMillis = 1000;
+  private long iterationMillis = 1000;
+  // keeps the results alive, so the measured code isn't eliminated
+  private long sink;
+
+  public Harness(Class<?> benchmark, String[] args) {
+    this.benchmark = benchmark;
+    this.args = args;
+
+    int i = 0;
+    for (; i+1 < args.length && args[i].startsWith("-"); i += 2) {
+      final int value = Integer.parseInt(args[i+1]);
+      if (args[i].equals("-f")) {
+        forks = value;
+      } else if (args[i].equals("-wi")) {
+        warmupIterations = value;
+      } else if (args[i].equals("-i")) {
+        iterations = Math.max(1, value);
+      } else if (args[i].equals("-w")) {
+        warmupMillis = value;
+      } else if (args[i].equals("-r")) {
+        iterationMillis = value;
+      } else {
+        throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    params = new String[args.length - i];
+    System.arraycopy(args, i, params, 0, params.length);
+  }
+
+  /**
+   * @return the arguments of the benchmark after the options of the harness.
+   */
+  public String[] getParams() {
+    return params;
+  }
+
+  /**
+   * Runs the benchmark by the forks and prints the scores of its cases, unless this is a fork already
+   * or there are no forks.
+   *
+   * @return true if the forks have run the benchmark, then it mustn't be run again.
+   */
+  public boolean fork() throws IOException, InterruptedException {
+    if (forked || forks <= 0) {
+      return false;
+    }
+
+    final Map<String, List<Double>> scores = new LinkedHashMap<String, List<Double>>();
+    for (int fork = 1; fork <= forks; fork++) {
+      System.out.println(String.format("# fork %d of %d", fork, forks));
+      final List<String> command = new ArrayList<String>();
+      command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+      // the heap and the other options of the JVM are the same
+      command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add("-D" + FORK_PROPERTY + "=" + fork);
+      command.add(benchmark.getName());
+      for (final String arg : args) {
+        command.add(arg);
+      }
+
+      final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      final BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+      try {
+        for (String line = output.readLine(); line != null; line = output.readLine()) {
+          if (line.startsWith(RESULT_PREFIX)) {
+            final String[] fields = line.split("\t");
+            List<Double> caseScores = scores.get(fields[1]);
+            if (caseScores == null) {
+              caseScores = new ArrayList<Double>();
+              scores.put(fields[1], caseScores);
+            }
+            for (int i = 2; i < fields.length; i++) {
+              caseScores.add(Double.valueOf(fields[i]));
+            }
+          } else {
+            System.out.println(line);
+          }
+        }
+      } finally {
+        output.close();
+      }
+      final int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        throw new IllegalStateException("The fork " + fork + " has exited with " + exitCode);
+      }
+    }
+
+    System.out.println(String.format("# %d forks, %d iterations each", forks, iterations));
+    for (final Map.Entry<String, List<Double>> entry : scores.entrySet()) {
+      final List<Double> caseScores = entry.getValue();
+      final double[] values = new double[caseScores.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = caseScores.get(i);
+      }
+      print(entry.getKey(), values);
+    }
+
+    return true;
+  }
+
+  /**
+   * Runs the warmup and the measurement iterations of the case, a fork reports their scores to the benchmark
+   * which has started it.
+   */
+  public void measure(Case c) {
+    for (int i = 0; i < warmupIterations; i++) {
+      c.startIteration(true);
+      iterate(c, warmupMillis);
+    }
+
+    final double[] scores = new double[iterations];
+    for (int i = 0; i < iterations; i++) {
+      c.startIteration(false);
+      scores[i] = iterate(c, iterationMillis);
+    }
+
+    if (forked) {
+      final StringBuilder line = new StringBuilder(RESULT_PREFIX).append('\t').append(c.getName());
+      for (final double score : scores) {
+        line.append('\t').append(score);
+      }
+      System.out.println(line);
+    } else {
+      print(c.getName(), scores);
+    }
+  }
+
+  public long getSink() {
+    return sink;
+  }
+
+  /**
+   * @return nanos per operation.
+   */
+  private double iterate(Case c, long millis) {
+    final long deadline = System.nanoTime() + millis*1000000L;
+    long ops = 0;
+    final long begin = System.nanoTime();
+    long now;
+    do {
+      sink += c.run((int) ops);
+      ops++;
+      now = System.nanoTime();
+    } while (now < deadline);
+
+    return (double) (now - begin)/ops;
+  }
+
+  private static void print(String name, double[] scores) {
+    double sum = 0;
+    for (final double score : scores) {
+      sum += score;
+    }
+    final double mean = sum/scores.length;
+    double squares = 0;
+    for (final double score : scores) {
+      squares += (score - mean)*(score - mean);
+    }
+    final double deviation = (scores.length > 1 ? Math.sqrt(squares/(scores.length - 1)) : 0);
+
+    System.out.println(String.format("%-24s %4d iterations %16.1f +- %12.1f ns/op", name, scores.length, mean,
+        deviation));
+  }
+}
@@ -0,0 +1,192 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.droidek.core.util.IntervalIndex;
+
+/**
+ * Checks that the pure Java part of drawing a frame doesn't allocate: the snapshot of the frame with its
+ * labels, the query of the visible bars, the density of the slots, the hit test and the metrics.
+ * The frames of flings are drawn over and over on a plain JVM, and the bytes allocated by the thread
+ * are counted once the code is compiled.
+ * <p>
+ * Built as the README of the benchmarks says, then run on a HotSpot JVM:
+ * <pre>
+ * java -cp bin com.droidek.core.gantt.AllocationCheck
+ * </pre>
+ * It exits with 1 if a frame has allocated.
+ *
+ * @author agent
+ *
+ */
+public class AllocationCheck {
+  private static final long HOUR = ZoomLevel.HOUR_IN_MILLIS;
+  private static final int TASKS = 10000;
+  private static final int WARMUP_ROUNDS = 10;
+  // the labels of the level are cached by the first frames
+  private static final int LEVEL_WARMUP_FRAMES = 300;
+  private static final int CHECKED_FRAMES = 1000;
+  // the fling goes over these slots again and again, so their labels fit the cache
+  private static final int FLING_SLOTS = 32;
+  private static final int FRAME_W = 720;
+  private static final int ROWS = 12;
+  private static final int ROW_H = 60;
+
+  // keeps the results alive, so the checked code isn't eliminated
+  private static long sink;
+
+  private final ZoomLadder ladder = ZoomLadder.createDefault();
+  private final SnapshotBuilder builder = new SnapshotBuilder();
+  private final TaskLayout layout = new TaskLayout();
+  private final Timeline timeline = new Timeline();
+  private final RenderMetrics metrics = new RenderMetrics();
+  private final Viewport viewport = new Viewport();
+  private final FrameSnapshot snapshot = new FrameSnapshot();
+  private final int[] density = new int[64];
+  private final IntervalIndex.Visitor barCounter = new IntervalIndex.Visitor() {
+    @Override
+    public boolean visit(int position) {
+      sink += layout.getRow(position);
+      return true;
+    }
+  };
+  private final com.sun.management.ThreadMXBean allocations;
+  private final long thread = Thread.currentThread().getId();
+  // bytes the counting itself takes
+  private final long overhead;
+  private long allocated;
+  private int level = -1;
+  private int slot;
+  private long start;
+  private int scrollX;
+
+  public static void main(String[] args) {
+    final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      System.out.println("The JVM doesn't count the allocated bytes.");
+      return;
+    }
+
+    final AllocationCheck check = new AllocationCheck((com.sun.management.ThreadMXBean) threads);
+    // the checking code is compiled too, so the switch to the compiled code isn't counted
+    for (int round = 0; round < WARMUP_ROUNDS; round++) {
+      for (int level = 0; level < check.ladder.size(); level++) {
+        check.checkLevel(level);
+      }
+    }
+
+    check.allocated = 0;
+    int frames = 0;
+    int failed = 0;
+    for (int level = 0; level < check.ladder.size(); level++) {
+      final int levelFailed = check.checkLevel(level);
+      System.out.println(String.format("level %d: %d of %d frames allocating", level, levelFailed, CHECKED_FRAMES));
+      frames += CHECKED_FRAMES;
+      failed += levelFailed;
+    }
+
+    System.out.println(String.format("%d frames, %d allocating, %d bytes allocated", frames, failed, check.allocated));
+    System.out.println("sink " + sink);
+    if (failed > 0) {
+      System.exit(1);
+    }
+  }
+
+  public AllocationCheck(com.sun.management.ThreadMXBean allocations) {
+    this.allocations = allocations;
+    overhead = -allocations.getThreadAllocatedBytes(thread) + allocations.getThreadAllocatedBytes(thread);
+
+    final List<ZoomLevel> levels = new ArrayList<ZoomLevel>();
+    for (int i = 0; i < ladder.size(); i++) {
+      levels.add(new ZoomLevel(ladder.get(i)));
+    }
+    builder.setLevels(levels);
+    builder.setLanePacking(true);
+    layout.setLanePacking(true);
+
+    // hour long to day long tasks, about ten of them start each hour
+    final Random random = new Random(TASKS);
+    builder.beginBatch();
+    layout.beginBatch();
+    long taskStart = 0;
+    for (int i = 0; i < TASKS; i++) {
+      taskStart += random.nextInt((int) (HOUR/5));
+      final long taskEnd = taskStart + HOUR*(1 + random.nextInt(24));
+      builder.setTask(i, i, taskStart, taskEnd);
+      layout.add(i, taskStart, taskEnd);
+    }
+    layout.commitBatch();
+    builder.commitBatch();
+    metrics.setEnabled(true);
+  }
+
+  /**
+   * Flings at the level till its labels are cached, then counts the bytes of every frame.
+   *
+   * @return number of the frames which have allocated.
+   */
+  private int checkLevel(int levelIndex) {
+    for (int i = 0; i < LEVEL_WARMUP_FRAMES; i++) {
+      drawFrame(levelIndex);
+    }
+
+    int failed = 0;
+    for (int i = 0; i < CHECKED_FRAMES; i++) {
+      final long before = allocations.getThreadAllocatedBytes(thread);
+      drawFrame(levelIndex);
+      final long bytes = allocations.getThreadAllocatedBytes(thread) - before - overhead;
+      if (bytes > 0) {
+        allocated += bytes;
+        failed++;
+      }
+    }
+
+    return failed;
+  }
+
+  /**
+   * Draws the next frame of a fling over the first slots of the tasks, a slot takes a few frames.
+   */
+  private void drawFrame(int levelIndex) {
+    final long begin = System.nanoTime();
+    final ZoomLevel level = ladder.get(levelIndex);
+    final int slotW = Math.max(1, level.getSlotWidth(FRAME_W));
+    final int slotsNum = Math.min(density.length, FRAME_W/slotW + 2);
+    if (this.level != levelIndex) {
+      this.level = levelIndex;
+      slot = 0;
+      start = 0;
+      scrollX = 0;
+    }
+    scrollX += slotW/8 + 1;
+    if (scrollX >= slotW) {
+      scrollX = 0;
+      slot = (slot + 1) % FLING_SLOTS;
+      start = level.addSlots(0, slot);
+    }
+    timeline.setSlots(slotsNum, level);
+    timeline.setStart(start);
+
+    final long snapshotBegin = metrics.begin();
+    viewport.set(start, levelIndex, slotW, slotsNum, scrollX, 0, ROWS, ROW_H, 0);
+    builder.build(viewport, snapshot);
+    sink += snapshot.getBarsNum() + snapshot.getLabelsNum();
+    metrics.end(RenderMetrics.Section.TASKS, snapshotBegin);
+
+    final long slotsBegin = metrics.begin();
+    for (int i = 0; i < slotsNum; i++) {
+      density[i] = layout.count(timeline.getSlotStart(i), timeline.getSlotStart(i+1));
+    }
+    layout.query(timeline.getStart(), timeline.getCompl(), barCounter);
+    sink += layout.find(timeline.getSlotStart(1), timeline.getSlotStart(2), 0, ROWS);
+    metrics.end(RenderMetrics.Section.TIME_SLOTS, slotsBegin);
+
+    metrics.recordFrame(System.nanoTime() - begin);
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.droidek.core.bench.Harness;
+import com.droidek.core.bench.Harness.Case;
+import com.droidek.core.util.Histogram;
+
+/**
+ * Measures the frames of flings on a plain JVM: every frame of a decelerating fling builds the snapshot
+ * of the frame, i.e. the ruler labels and the bars, the way the snapshot worker does it, and the frame
+ * times are compared with the frame budget of 60 fps.
+ * <p>
+ * Built and run as the README of the benchmarks says:
+ * <pre>
+ * java -cp bin com.droidek.core.gantt.FlingBenchmark [harness options] [tasks...]
+ * </pre>
+ * An operation of the {@link Harness} is a frame, one fling follows another. Each fork prints the 99th
+ * percentile and the max of the frame times of the measurement iterations and the frames over the budget.
+ *
+ * @author agent
+ *
+ */
+public class FlingBenchmark {
+  private static final int[] DEFAULT_SIZES = {1000, 100000, 1000000};
+  private static final long HOUR = ZoomLevel.HOUR_IN_MILLIS;
+  private static final long FRAME_BUDGET_NANOS = 16666667;
+  private static final int FRAME_MILLIS = 16;
+  // a fast fling of a phone screen in px/s and its deceleration in px/s^2
+  private static final int VELOCITY = 8000;
+  private static final int DECELERATION = 4000;
+  private static final int FRAME_W = 720;
+  private static final int ROWS = 12;
+  private static final int ROW_H = 60;
+
+  /**
+   * Flings the frame from a random place at a random level to the left or to the right till it stops,
+   * then starts the next fling.
+   */
+  private static class FlingCase extends Case {
+    private final ZoomLadder ladder;
+    private final SnapshotBuilder builder;
+    private final Random random;
+    private final FrameSnapshot snapshot = new FrameSnapshot();
+    private final Viewport viewport = new Viewport();
+    private final Histogram frames = new Histogram();
+    private boolean measuring;
+    private long overBudget;
+    // the current fling
+    private int levelIndex;
+    private ZoomLevel level;
+    private int slotW;
+    private int slotsNum;
+    private long start;
+    private int topRow;
+    private int direction;
+    private int scrollX;
+    private double offset;
+    private double velocity;
+
+    public FlingCase(int size, ZoomLadder ladder) {
+      super("fling " + size);
+      this.ladder = ladder;
+      builder = build(size, ladder);
+      random = new Random(size);
+    }
+
+    @Override
+    protected void startIteration(boolean warmup) {
+      measuring = !warmup;
+    }
+
+    @Override
+    protected long run(int i) {
+      final long begin = System.nanoTime();
+      if (velocity <= 0) {
+        startFling();
+      }
+      offset += velocity*FRAME_MILLIS/1000.0;
+      velocity -= DECELERATION*FRAME_MILLIS/1000.0;
+      scrollX += (int) offset*direction;
+      offset -= (int) offset;
+      // the frame keeps the scroll inside the start slot
+      while (scrollX >= slotW) {
+        scrollX -= slotW;
+        start = level.addSlots(start, 1);
+      }
+      while (scrollX < 0) {
+        scrollX += slotW;
+        start = level.addSlots(start, -1);
+      }
+      viewport.set(start, levelIndex, slotW, slotsNum, scrollX, topRow, ROWS, ROW_H, 0);
+      builder.build(viewport, snapshot);
+
+      if (measuring) {
+        final long time = System.nanoTime() - begin;
+        frames.record(time);
+        if (time > FRAME_BUDGET_NANOS) {
+          overBudget++;
+        }
+      }
+
+      return snapshot.getBarsNum() + snapshot.getLabelsNum();
+    }
+
+    public void printFrames() {
+      System.out.println(String.format("%-24s %8d frames  p99 %8.1f us  max %8.1f us  over budget %d", getName(),
+          frames.getCount(), frames.getPercentile(99)/1000.0, frames.getMax()/1000.0, overBudget));
+    }
+
+    private void startFling() {
+      levelIndex = random.nextInt(ladder.size());
+      level = ladder.get(levelIndex);
+      slotW = Math.max(1, level.getSlotWidth(FRAME_W));
+      slotsNum = FRAME_W/slotW + 2;
+      start = level.alignStart(random.nextInt(1000)*HOUR);
+      topRow = random.nextInt(1000);
+      direction = (random.nextBoolean() ? 1 : -1);
+      scrollX = 0;
+      offset = 0;
+      velocity = VELOCITY;
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    final Harness harness = new Harness(FlingBenchmark.class, args);
+    if (harness.fork()) {
+      return;
+    }
+
+    int[] sizes = DEFAULT_SIZES;
+    final String[] params = harness.getParams();
+    if (params.length > 0) {
+      sizes = new int[params.length];
+      for (int i = 0; i < params.length; i++) {
+        sizes[i] = Integer.parseInt(params[i]);
+      }
+    }
+
+    final ZoomLadder ladder = ZoomLadder.createDefault();
+    for (final int size : sizes) {
+      final FlingCase fling = new FlingCase(size, ladder);
+      harness.measure(fling);
+      fling.printFrames();
+    }
+
+    System.out.println("sink " + harness.getSink());
+  }
+
+  /**
+   * Hour long to day long tasks, about ten of them start each hour, packed into lanes.
+   */
+  private static SnapshotBuilder build(int size, ZoomLadder ladder) {
+    final List<ZoomLevel> levels = new ArrayList<ZoomLevel>();
+    for (int i = 0; i < ladder.size(); i++) {
+      levels.add(ladder.get(i));
+    }
+    final SnapshotBuilder builder = new SnapshotBuilder();
+    builder.setLevels(levels);
+    builder.setLanePacking(true);
+    final Random random = new Random(size);
+    builder.beginBatch();
+    long start = 0;
+    for (int i = 0; i < size; i++) {
+      start += random.nextInt((int) (HOUR/5));
+      builder.setTask(i, i, start, start + HOUR*(1 + random.nextInt(24)));
+    }
+    builder.commitBatch();
+
+    return builder;
+  }
+}
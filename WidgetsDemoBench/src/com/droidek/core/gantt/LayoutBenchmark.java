@@ -0,0 +1,149 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.io.IOException;
+import java.util.Random;
+
+import com.droidek.core.bench.Harness;
+import com.droidek.core.bench.Harness.Case;
+
+/**
+ * Measures the layout engine on a plain JVM, there are no Android classes involved.
+ * <p>
+ * Built and run as the README of the benchmarks says:
+ * <pre>
+ * java -cp bin com.droidek.core.gantt.LayoutBenchmark [harness options] [tasks...]
+ * </pre>
+ * The cases are run by the {@link Harness}, which prints the mean time of an operation of each of them.
+ *
+ * @author agent
+ *
+ */
+public class LayoutBenchmark {
+  private static final int[] DEFAULT_SIZES = {1000, 100000, 1000000};
+  private static final long HOUR = ZoomLevel.HOUR_IN_MILLIS;
+  private static final int ROWS = 8;
+
+  // keeps the results alive, so the measured code isn't eliminated
+  private static long sink;
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    final Harness harness = new Harness(LayoutBenchmark.class, args);
+    if (harness.fork()) {
+      return;
+    }
+
+    int[] sizes = DEFAULT_SIZES;
+    final String[] params = harness.getParams();
+    if (params.length > 0) {
+      sizes = new int[params.length];
+      for (int i = 0; i < params.length; i++) {
+        sizes[i] = Integer.parseInt(params[i]);
+      }
+    }
+
+    for (final int size : sizes) {
+      final long[] starts = new long[size];
+      final long[] ends = new long[size];
+      generate(size, starts, ends);
+
+      harness.measure(new Case("layout/rows " + size) {
+        @Override
+        protected long run(int i) {
+          return build(starts, ends, false).getRowCount();
+        }
+      });
+      harness.measure(new Case("layout/lanes " + size) {
+        @Override
+        protected long run(int i) {
+          return build(starts, ends, true).getRowCount();
+        }
+      });
+
+      final TaskLayout layout = build(starts, ends, true);
+      final long span = ends[size-1];
+      harness.measure(new Case("hit-test " + size) {
+        private final Random random = new Random(size);
+
+        @Override
+        protected long run(int i) {
+          final long slotStart = (long) (random.nextDouble()*span);
+          final int fromRow = random.nextInt(Math.max(1, layout.getRowCount()));
+          return layout.find(slotStart, slotStart+HOUR, fromRow, fromRow+ROWS);
+        }
+      });
+      harness.measure(new Case("move " + size) {
+        private final Random random = new Random(size);
+
+        @Override
+        protected long run(int i) {
+          final int position = random.nextInt(size);
+          final long shift = (random.nextBoolean() ? HOUR : -HOUR);
+          layout.set(position, layout.getStart(position)+shift, layout.getEnd(position)+shift);
+          return layout.getRow(position);
+        }
+      });
+    }
+
+    measureRelabel(harness);
+
+    System.out.println("sink " + (sink + harness.getSink()));
+  }
+
+  /**
+   * The labels of all the slots are formatted again on each zoom change if nothing is cached.
+   */
+  private static void measureRelabel(Harness harness) {
+    final ZoomLadder ladder = ZoomLadder.createDefault();
+    harness.measure(new Case("zoom-relabel") {
+      private long start = System.currentTimeMillis();
+
+      @Override
+      protected long run(int i) {
+        if (ladder.canZoomIn()) {
+          ladder.zoomIn();
+        } else {
+          ladder.setCurrentIndex(0);
+        }
+        final ZoomLevel level = ladder.getCurrent();
+
+        // a new frame each time, so the labels couldn't be reused
+        start += level.getSlotMillis();
+        long slotStart = level.alignStart(start);
+        long length = 0;
+        for (int slot = 0; slot <= level.getSlotsNum(); slot++) {
+          length += level.formatGroup(slotStart).length() + level.format(slotStart).length();
+          slotStart = level.addSlots(slotStart, 1);
+        }
+        return length;
+      }
+    });
+  }
+
+  /**
+   * Hour long to day long tasks, about ten of them start each hour.
+   */
+  private static void generate(int size, long[] starts, long[] ends) {
+    final Random random = new Random(size);
+    long start = 0;
+    for (int i = 0; i < size; i++) {
+      start += random.nextInt((int) (HOUR/5));
+      starts[i] = start;
+      ends[i] = start + HOUR*(1 + random.nextInt(24));
+    }
+  }
+
+  private static TaskLayout build(long[] starts, long[] ends, boolean lanePacking) {
+    final TaskLayout layout = new TaskLayout();
+    for (int i = 0; i < starts.length; i++) {
+      layout.add(i, starts[i], ends[i]);
+    }
+    layout.setLanePacking(lanePacking);
+    // the index is sorted on the first query
+    sink += layout.count(0, 1);
+
+    return layout;
+  }
+}
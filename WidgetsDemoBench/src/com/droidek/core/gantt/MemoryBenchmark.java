@@ -0,0 +1,107 @@
+/**
+ * 18-OCT-2026
+ */
+package com.droidek.core.gantt;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.droidek.core.uicomponents.GanttChartView;
+import com.droidek.core.uicomponents.GanttChartView.TodoTask;
+import com.droidek.core.util.LongIntHashMap;
+
+/**
+ * Compares heap taken by a {@link TodoTask} of the view with a task of the {@link TaskStore}.
+ * <p>
+ * The tasks of the view are created by the constructor the view uses, but without a view, the tasks
+ * share their view anyway. So the Android classes are only loaded, they are given by the android.jar
+ * of the SDK as the README of the benchmarks says, and the benchmark is run with enough heap:
+ * <pre>
+ * java -Xmx2g -cp bin:$ANDROID_JAR com.droidek.core.gantt.MemoryBenchmark [tasks] [distinct names]
+ * </pre>
+ * Each of them is measured a few times after a warmup run, the mean and the deviation are printed.
+ *
+ * @author agent
+ *
+ */
+public class MemoryBenchmark {
+  private static final int DEFAULT_TASKS = 500000;
+  private static final int DEFAULT_NAMES = 1000;
+  private static final int WARMUP_ITERATIONS = 1;
+  private static final int ITERATIONS = 5;
+  private static final long HOUR = ZoomLevel.HOUR_IN_MILLIS;
+
+  // keeps the measured structures reachable
+  private static Object kept;
+
+  public static void main(String[] args) throws Exception {
+    final int tasks = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TASKS);
+    final int namesNum = (args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NAMES);
+
+    final Constructor<TodoTask> constructor = TodoTask.class.getDeclaredConstructor(GanttChartView.class,
+        long.class, String.class, long.class, int.class);
+    constructor.setAccessible(true);
+
+    final double[] objectBytes = new double[ITERATIONS];
+    final double[] storeBytes = new double[ITERATIONS];
+    for (int iteration = -WARMUP_ITERATIONS; iteration < ITERATIONS; iteration++) {
+      long before = usedMemory();
+      // the frame keeps the tasks in a list and their positions by the ids
+      final List<TodoTask> objects = new ArrayList<TodoTask>();
+      final LongIntHashMap ids = new LongIntHashMap();
+      for (int i = 0; i < tasks; i++) {
+        // names come from parsing or a database, so the equal ones are different instances
+        final String name = new String("Task #" + (i % namesNum));
+        objects.add(constructor.newInstance(null, (long) i, name, i*HOUR, 1 + i % 24));
+        ids.put(i, i);
+      }
+      kept = new Object[] {objects, ids};
+      final long objectsUsed = usedMemory() - before;
+      kept = null;
+      objects.clear();
+
+      before = usedMemory();
+      final TaskStore store = new TaskStore();
+      for (int i = 0; i < tasks; i++) {
+        store.add(i, new String("Task #" + (i % namesNum)), i*HOUR, 1 + i % 24);
+      }
+      kept = store;
+      final long storeUsed = usedMemory() - before;
+      kept = null;
+
+      if (iteration >= 0) {
+        objectBytes[iteration] = (double) objectsUsed/tasks;
+        storeBytes[iteration] = (double) storeUsed/tasks;
+      }
+    }
+
+    System.out.println(String.format("%d tasks, %d names, %d iterations", tasks, namesNum, ITERATIONS));
+    print("objects", objectBytes);
+    print("store", storeBytes);
+  }
+
+  private static void print(String name, double[] values) {
+    double sum = 0;
+    for (final double value : values) {
+      sum += value;
+    }
+    final double mean = sum/values.length;
+    double squares = 0;
+    for (final double value : values) {
+      squares += (value - mean)*(value - mean);
+    }
+    final double deviation = (values.length > 1 ? Math.sqrt(squares/(values.length - 1)) : 0);
+
+    System.out.println(String.format("%-8s %10.1f +- %6.1f bytes/task", name, mean, deviation));
+  }
+
+  private static long usedMemory() throws InterruptedException {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}